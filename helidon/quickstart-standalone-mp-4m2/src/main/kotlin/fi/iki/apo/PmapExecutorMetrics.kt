@@ -0,0 +1,66 @@
+package fi.iki.apo
+
+import jakarta.enterprise.context.ApplicationScoped
+import jakarta.enterprise.context.Initialized
+import jakarta.enterprise.event.Observes
+import jakarta.inject.Inject
+import org.eclipse.microprofile.metrics.MetricRegistry
+import org.eclipse.microprofile.metrics.Tag
+import java.lang.management.ManagementFactory
+import java.util.concurrent.ConcurrentHashMap
+import java.util.function.Function
+import javax.management.InstanceNotFoundException
+import javax.management.MBeanServerDelegate
+import javax.management.MBeanServerNotification
+import javax.management.NotificationListener
+import javax.management.ObjectName
+
+/**
+ * Publishes the pmap executors exported over JMX by fi.iki.apo.pmap.executor.ExecutorRegistry as gauges on the
+ * metrics endpoint, tagged with the executor name. Only does something when jvm21-demo runs in the same JVM.
+ */
+@ApplicationScoped
+open class PmapExecutorMetrics {
+    @Inject
+    private lateinit var registry: MetricRegistry
+
+    private val mBeanServer = ManagementFactory.getPlatformMBeanServer()
+    private val executorPattern = ObjectName("fi.iki.apo.pmap:type=Executor,*")
+    private val registered = ConcurrentHashMap.newKeySet<ObjectName>()
+    private val attributes = listOf(
+        "QueueDepth", "ActiveWorkers", "PoolSize", "SubmittedTasks", "CompletedTasks", "RejectedTasks",
+        "WaitTimeMeanMicros", "WaitTimeP50Micros", "WaitTimeP99Micros", "WaitTimeMaxMicros",
+        "RunTimeMeanMicros", "RunTimeP50Micros", "RunTimeP99Micros", "RunTimeMaxMicros"
+    )
+
+    open fun onStartup(@Observes @Initialized(ApplicationScoped::class) event: Any) {
+        mBeanServer.queryNames(executorPattern, null).forEach(::registerGauges)
+        // the pmap pools are created when they are first used, so pick up the ones registered later too
+        mBeanServer.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME, NotificationListener { notification, _ ->
+            if (notification is MBeanServerNotification &&
+                notification.type == MBeanServerNotification.REGISTRATION_NOTIFICATION &&
+                executorPattern.apply(notification.mBeanName)
+            ) {
+                registerGauges(notification.mBeanName)
+            }
+        }, null, null)
+    }
+
+    private fun registerGauges(name: ObjectName) {
+        if (!registered.add(name)) {
+            return
+        }
+        val executorTag = Tag("executor", ObjectName.unquote(name.getKeyProperty("name")))
+        for (attribute in attributes) {
+            val metricName = "pmap.executor." + attribute.replaceFirstChar { it.lowercase() }
+            registry.gauge(metricName, name, Function<ObjectName, Double> { readAttribute(it, attribute) }, executorTag)
+        }
+    }
+
+    private fun readAttribute(name: ObjectName, attribute: String): Double =
+        try {
+            (mBeanServer.getAttribute(name, attribute) as Number).toDouble()
+        } catch (e: InstanceNotFoundException) {
+            Double.NaN
+        }
+}
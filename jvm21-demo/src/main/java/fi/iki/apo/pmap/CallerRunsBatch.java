@@ -0,0 +1,73 @@
+package fi.iki.apo.pmap;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// Runs a batch of tasks on the calling thread and on helpers submitted to an executor. Everyone claims the next
+// unclaimed task until none are left, so the caller works instead of waiting and only waits for tasks other threads
+// are still running. Helpers that start after all tasks have been claimed return immediately.
+public class CallerRunsBatch implements Runnable {
+    private static final int AWAIT_SPINS = 1000;
+    private final List<? extends Callable<?>> tasks;
+    private final AtomicInteger nextTask = new AtomicInteger();
+    private final AtomicInteger remaining;
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+    private final Thread caller;
+
+    private CallerRunsBatch(List<? extends Callable<?>> tasks) {
+        this.tasks = tasks;
+        this.remaining = new AtomicInteger(tasks.size());
+        this.caller = Thread.currentThread();
+    }
+
+    public static void runAndAwait(Executor executor, int parallelism, List<? extends Callable<?>> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        final var batch = new CallerRunsBatch(tasks);
+        final int helperCount = Math.min(tasks.size(), parallelism) - 1;
+        for (int c = 0; c < helperCount; c++) {
+            executor.execute(batch);
+        }
+        batch.run();
+        batch.await();
+    }
+
+    @Override
+    public void run() {
+        int index;
+        while ((index = nextTask.getAndIncrement()) < tasks.size()) {
+            try {
+                tasks.get(index).call();
+            } catch (Throwable t) {
+                firstFailure.compareAndSet(null, t);
+            } finally {
+                if (remaining.decrementAndGet() == 0 && Thread.currentThread() != caller) {
+                    LockSupport.unpark(caller);
+                }
+            }
+        }
+    }
+
+    private void await() {
+        for (int c = 0; c < AWAIT_SPINS && remaining.get() > 0; c++) {
+            Thread.onSpinWait();
+        }
+        boolean interrupted = false;
+        while (remaining.get() > 0) {
+            LockSupport.park(this);
+            interrupted |= Thread.interrupted();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        final var failure = firstFailure.get();
+        if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package fi.iki.apo.pmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Shared by the tasks of one pmap call. The first failure is recorded with its index, the other tasks see it
+// between items and stop, and registered futures are cancelled so that blocked tasks get interrupted.
+public class FailFastToken {
+    private volatile boolean failed = false;
+    private final AtomicReference<PMapException> firstFailure = new AtomicReference<>();
+    private final List<Future<?>> futures = new ArrayList<>();
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public void fail(int index, Throwable throwable) {
+        if (firstFailure.compareAndSet(null, new PMapException(index, throwable))) {
+            failed = true;
+            synchronized (futures) {
+                futures.forEach(future -> future.cancel(true));
+            }
+        }
+    }
+
+    public void register(Future<?> future) {
+        synchronized (futures) {
+            futures.add(future);
+        }
+        if (failed) {
+            future.cancel(true);
+        }
+    }
+
+    public void throwIfFailed() {
+        final var failure = firstFailure.get();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package fi.iki.apo.pmap;
 
+import fi.iki.apo.pmap.executor.ExecutorRegistry;
 import fi.iki.apo.pmap.simplethreadpool.SimpleThreadPool;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.function.Function;
@@ -15,34 +17,22 @@ public class JavaMapAlternatives {
         return Runtime.getRuntime().availableProcessors();
     }
 
-    public static final ThreadPoolExecutor reusedVirtualFixedThreadPool = new ThreadPoolExecutor(
-            getCpuCount(),
-            getCpuCount(),
-            0L,
-            TimeUnit.MILLISECONDS,
-            new LinkedBlockingQueue(),
-            Thread.ofVirtual().factory(),
-            new ThreadPoolExecutor.AbortPolicy()
-    );
-    public static final ThreadPoolExecutor reusedVirtualFixedThreadPoolDoubleThreads = new ThreadPoolExecutor(
-            getCpuCount()*2,
-            getCpuCount()*2,
-            0L,
-            TimeUnit.MILLISECONDS,
-            new LinkedBlockingQueue(),
-            Thread.ofVirtual().factory(),
-            new ThreadPoolExecutor.AbortPolicy()
-    );
-
-    public static final ExecutorService reusedFixedThreadPool = Executors.newFixedThreadPool(getCpuCount());
-    public static final ExecutorService reusedFixedThreadPoolDoubleThreads = Executors.newFixedThreadPool(getCpuCount()*2);
-    public static final SimpleThreadPool reusedSimpleThreadPool = new SimpleThreadPool(getCpuCount()*2);
+    public static final ExecutorRegistry executorRegistry = new ExecutorRegistry("fi.iki.apo.pmap");
+    public static final ThreadPoolExecutor reusedVirtualFixedThreadPool = executorRegistry.fixedThreadPool(
+            "reusedVirtualFixedThreadPool", getCpuCount(), Thread.ofVirtual().factory());
+    public static final ThreadPoolExecutor reusedVirtualFixedThreadPoolDoubleThreads = executorRegistry.fixedThreadPool(
+            "reusedVirtualFixedThreadPoolDoubleThreads", getCpuCount()*2, Thread.ofVirtual().factory());
+    public static final ExecutorService reusedFixedThreadPool = executorRegistry.fixedThreadPool(
+            "reusedFixedThreadPool", getCpuCount(), Executors.defaultThreadFactory());
+    public static final ExecutorService reusedFixedThreadPoolDoubleThreads = executorRegistry.fixedThreadPool(
+            "reusedFixedThreadPoolDoubleThreads", getCpuCount()*2, Executors.defaultThreadFactory());
+    public static final SimpleThreadPool reusedSimpleThreadPool = executorRegistry.simpleThreadPool(
+            "reusedSimpleThreadPool", 0, getCpuCount()*2, Duration.ofSeconds(10), false);
+    public static final SimpleThreadPool reusedWorkStealingSimpleThreadPool = executorRegistry.simpleThreadPool(
+            "reusedWorkStealingSimpleThreadPool", 0, getCpuCount()*2, Duration.ofSeconds(10), true);
 
     static {
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            reusedVirtualFixedThreadPool.shutdownNow();
-            reusedFixedThreadPool.shutdownNow();
-        }));
+        Runtime.getRuntime().addShutdownHook(new Thread(executorRegistry::shutdownAll));
     }
 
 }
@@ -36,4 +36,12 @@ public class LoadGenerator {
         }
         return arr;
     }
+
+    public static int[] intArrayOf(int i) {
+        final var arr = new int[i];
+        for (int c = 0; c < i; c++) {
+            arr[c] = c;
+        }
+        return arr;
+    }
 }
@@ -1,15 +1,24 @@
 package fi.iki.apo.pmap;
 
+import fi.iki.apo.pmap.auto.AutoPMap;
 import fi.iki.apo.pmap.block.BlockProcessor;
 import fi.iki.apo.pmap.forkjoinpool.ForkJoinProcessTask;
+import fi.iki.apo.pmap.forkjoinpool.PMapFJRecursive;
+import fi.iki.apo.pmap.modulo.BlockCyclicProcessor;
 import fi.iki.apo.pmap.modulo.ModuloProcessor;
+import fi.iki.apo.pmap.modulo.PMapPrimitiveModulo;
 import fi.iki.apo.pmap.simplethreadpool.SimpleThreadPool;
+import fi.iki.apo.pmap.streaming.StreamingPMap;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import static fi.iki.apo.pmap.JavaMapAlternatives.getCpuCount;
 
@@ -40,19 +49,71 @@ public class MultipleOpsPerThreadMap {
         }
     }
 
+    public static <R> List<R> executeTasks(ExecutorService executor, TasksAndArray<Callable<Boolean>> tasksWithResultArray, FailFastToken failFast) {
+        final var futures = new ArrayList<Future<Boolean>>(tasksWithResultArray.tasks().size());
+        for (var task : tasksWithResultArray.tasks()) {
+            final var future = executor.submit(task);
+            futures.add(future);
+            failFast.register(future);
+        }
+        try {
+            for (var future : futures) {
+                if (failFast.isFailed()) {
+                    break;
+                }
+                try {
+                    future.get();
+                } catch (CancellationException e) {
+                    // cancelled because another block failed
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        failFast.throwIfFailed();
+        return Arrays.asList((R[]) tasksWithResultArray.rArr());
+    }
+
+    public static <R> List<R> executeTasksCallerRuns(Executor executor, int parallelism, TasksAndArray<Callable<Boolean>> tasksWithResultArray, FailFastToken failFast) {
+        CallerRunsBatch.runAndAwait(executor, parallelism, tasksWithResultArray.tasks());
+        failFast.throwIfFailed();
+        return Arrays.asList((R[]) tasksWithResultArray.rArr());
+    }
+
     public static <R> List<R> executeTasksInSimplePool(SimpleThreadPool pool, TasksAndArray<Callable<Boolean>> tasksWithResultArray) {
         try {
-            pool.submitCallables(tasksWithResultArray.tasks());
+            pool.invokeBatch(tasksWithResultArray.tasks());
             return Arrays.asList((R[]) tasksWithResultArray.rArr());
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    public static <R> List<R> executeTasksInSimplePool(SimpleThreadPool pool, TasksAndArray<Callable<Boolean>> tasksWithResultArray, FailFastToken failFast) {
+        final List<R> results = executeTasksInSimplePool(pool, tasksWithResultArray);
+        failFast.throwIfFailed();
+        return results;
+    }
+
     public static <R> List<R> executeTasksInFJP(TasksAndArray<ForkJoinProcessTask> result) {
         ForkJoinPool.commonPool().invoke(new ForkJoinProcessTask(result.tasks(), null));
         return Arrays.asList((R[]) result.rArr());
     }
 
+    public static <R> List<R> executeTasksInFJP(TasksAndArray<ForkJoinProcessTask> result, FailFastToken failFast) {
+        final List<R> results = executeTasksInFJP(result);
+        failFast.throwIfFailed();
+        return results;
+    }
+
     public static ModuloProcessor modulo = new ModuloProcessor();
+    public static BlockCyclicProcessor blockCyclic16 = new BlockCyclicProcessor(16);
+    public static BlockCyclicProcessor blockCyclic64 = new BlockCyclicProcessor(64);
+    public static PMapFJRecursive recursiveFJ250 = new PMapFJRecursive(250, 3);
+    public static PMapFJRecursive recursiveFJ1000 = new PMapFJRecursive(1000, 3);
+    public static AutoPMap auto = AutoPMap.fromSystemProperty();
+    public static StreamingPMap streamingReusedFixedThreadPool = new StreamingPMap(JavaMapAlternatives.reusedFixedThreadPool, 2000, getCpuCount() * 2);
+    public static StreamingPMap streamingReusedVirtualFixedThreadPool = new StreamingPMap(JavaMapAlternatives.reusedVirtualFixedThreadPool, 2000, getCpuCount() * 2);
+    public static PMapPrimitiveModulo primitiveModuloFixedReused = new PMapPrimitiveModulo(JavaMapAlternatives.reusedVirtualFixedThreadPool);
+    public static PMapPrimitiveModulo primitiveModuloFJ = new PMapPrimitiveModulo(ForkJoinPool.commonPool());
 }
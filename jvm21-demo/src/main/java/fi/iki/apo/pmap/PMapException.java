@@ -0,0 +1,10 @@
+package fi.iki.apo.pmap;
+
+public class PMapException extends RuntimeException {
+    public final int index;
+
+    public PMapException(int index, Throwable cause) {
+        super("Mapping item at index " + index + " failed: " + cause, cause);
+        this.index = index;
+    }
+}
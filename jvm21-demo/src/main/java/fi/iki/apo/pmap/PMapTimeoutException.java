@@ -0,0 +1,14 @@
+package fi.iki.apo.pmap;
+
+import java.util.BitSet;
+
+public class PMapTimeoutException extends RuntimeException {
+    public final BitSet completed;
+    public final int size;
+
+    public PMapTimeoutException(BitSet completed, int size) {
+        super("pmap deadline passed after " + completed.cardinality() + " of " + size + " items");
+        this.completed = completed;
+        this.size = size;
+    }
+}
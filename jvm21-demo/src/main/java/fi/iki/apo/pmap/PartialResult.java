@@ -0,0 +1,16 @@
+package fi.iki.apo.pmap;
+
+import java.util.BitSet;
+import java.util.List;
+
+// Result of a deadline limited pmap. results has the mapped value for every index set in completed and null for the
+// rest.
+public record PartialResult<R>(List<R> results, BitSet completed) {
+    public boolean isComplete() {
+        return completed.cardinality() == results.size();
+    }
+
+    public boolean isCompleted(int index) {
+        return completed.get(index);
+    }
+}
@@ -1,5 +1,7 @@
 package fi.iki.apo.pmap;
 
+import fi.iki.apo.pmap.io.VirtualThreadIOMap;
+
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.function.Function;
@@ -10,6 +12,10 @@ public class SingleOpPerThreadMap {
         return mapItemsWithExecutorAndClose(list, f, Executors.newVirtualThreadPerTaskExecutor());
     }
 
+    public static <T, R> List<R> pmapNewVirtualThreadLimited(List<T> list, Function<T, R> f, int maxInFlight) {
+        return new VirtualThreadIOMap(maxInFlight).pmap(list, f);
+    }
+
     public static <T, R> List<R> pmapFixedReusedVirtualThreadPool(List<T> list, Function<T, R> f) {
         return mapItemsWithExecutor(list, f, JavaMapAlternatives.reusedVirtualFixedThreadPool);
     }
@@ -0,0 +1,75 @@
+package fi.iki.apo.pmap.auto;
+
+import fi.iki.apo.pmap.PMapAlternative;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+// Maps the first sampleSize items sequentially to estimate the per-item cost and maps the rest of the list with
+// the strategy that the calibration profile measured to be fastest for that list size and cost.
+public class AutoPMap implements PMapAlternative {
+    public static final String PROFILE_PROPERTY = "pmap.calibrationProfile";
+
+    private final CalibrationProfile profile;
+    private final int sampleSize;
+
+    public AutoPMap(CalibrationProfile profile, int sampleSize) {
+        this.profile = profile;
+        this.sampleSize = sampleSize;
+    }
+
+    public static AutoPMap fromSystemProperty() {
+        final var path = System.getProperty(PROFILE_PROPERTY);
+        if (path != null && Files.exists(Path.of(path))) {
+            return new AutoPMap(CalibrationProfile.load(Path.of(path)), 8);
+        }
+        return new AutoPMap(CalibrationProfile.empty(), 8);
+    }
+
+    @Override
+    public <T, R> List<R> pmap(List<T> list, Function<T, R> f) {
+        final int size = list.size();
+        final int sampled = Math.min(sampleSize, size);
+        final var sample = new Object[sampled];
+        final long start = System.nanoTime();
+        for (int c = 0; c < sampled; c++) {
+            sample[c] = f.apply(list.get(c));
+        }
+        if (sampled == size) {
+            return Arrays.asList((R[]) sample);
+        }
+        final double itemNanos = (System.nanoTime() - start) / (double) sampled;
+        final var rest = resolveStrategy(size, itemNanos).pmap(list.subList(sampled, size), f);
+        return new SampledList<>((R[]) sample, rest);
+    }
+
+    // The sampled results followed by the results of the strategy, so the rest isn't copied to a second array
+    private static class SampledList<R> extends AbstractList<R> implements RandomAccess {
+        private final R[] sample;
+        private final List<R> rest;
+
+        SampledList(R[] sample, List<R> rest) {
+            this.sample = sample;
+            this.rest = rest;
+        }
+
+        @Override
+        public R get(int index) {
+            return index < sample.length ? sample[index] : rest.get(index - sample.length);
+        }
+
+        @Override
+        public int size() {
+            return sample.length + rest.size();
+        }
+    }
+
+    public AutoPMapStrategy resolveStrategy(int size, double itemNanos) {
+        return profile.resolveFastest(size, itemNanos);
+    }
+}
@@ -0,0 +1,70 @@
+package fi.iki.apo.pmap.auto;
+
+import fi.iki.apo.pmap.JavaMapAlternatives;
+import fi.iki.apo.pmap.LoadGenerator;
+import fi.iki.apo.util.Benchmark;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// Produces a CalibrationProfile by running every AutoPMapStrategy over a grid of list sizes and looperSlow loads.
+// Usage: AutoPMapCalibration <profile.json>, then start the application with -Dpmap.calibrationProfile=<profile.json>
+public class AutoPMapCalibration {
+    private static final List<Integer> listSizes = List.of(100, 1000, 10000, 100000, 1000000);
+    private static final List<Integer> loopCounts = List.of(1, 10, 100, 1000, 10000);
+
+    public static void main(String[] args) {
+        final var path = Path.of(args.length > 0 ? args[0] : "pmap-calibration.json");
+        final var benchmark = new Benchmark();
+        final var profile = calibrate(listSizes, loopCounts, 5, benchmark);
+        profile.save(path);
+        benchmark.print("Saved calibration profile to", path.toAbsolutePath());
+    }
+
+    public static CalibrationProfile calibrate(List<Integer> listSizes, List<Integer> loopCounts, int repeats, Benchmark benchmark) {
+        final var entries = new ArrayList<CalibrationProfile.Entry>();
+        for (var listSize : listSizes) {
+            final var list = LoadGenerator.listOf(listSize, i -> i);
+            for (var loopCount : loopCounts) {
+                final Function<Integer, Integer> f = i -> LoadGenerator.looperSlow(loopCount);
+                final var durations = new EnumMap<AutoPMapStrategy, Long>(AutoPMapStrategy.class);
+                for (var strategy : AutoPMapStrategy.values()) {
+                    durations.put(strategy, measureBest(strategy, list, f, repeats));
+                }
+                final var itemNanos = durations.get(AutoPMapStrategy.SEQUENTIAL) / (double) listSize;
+                final var fastest = resolveFastest(durations);
+                entries.add(new CalibrationProfile.Entry(listSize, itemNanos, fastest, durations));
+                benchmark.print("listSize", listSize, "loopCount", loopCount, "itemNanos", String.format("%.1f", itemNanos), "fastest", fastest);
+            }
+        }
+        return new CalibrationProfile(JavaMapAlternatives.getCpuCount(), entries);
+    }
+
+    private static long measureBest(AutoPMapStrategy strategy, List<Integer> list, Function<Integer, Integer> f, int repeats) {
+        long best = Long.MAX_VALUE;
+        // first round is warmup
+        for (int c = 0; c <= repeats; c++) {
+            final long start = System.nanoTime();
+            strategy.pmap(list, f);
+            final long duration = System.nanoTime() - start;
+            if (c > 0 && duration < best) {
+                best = duration;
+            }
+        }
+        return best;
+    }
+
+    private static AutoPMapStrategy resolveFastest(Map<AutoPMapStrategy, Long> durations) {
+        AutoPMapStrategy fastest = null;
+        for (var entry : durations.entrySet()) {
+            if (fastest == null || entry.getValue() < durations.get(fastest)) {
+                fastest = entry.getKey();
+            }
+        }
+        return fastest;
+    }
+}
@@ -0,0 +1,35 @@
+package fi.iki.apo.pmap.auto;
+
+import fi.iki.apo.pmap.JavaApiMap;
+import fi.iki.apo.pmap.MultipleOpsPerThreadMap;
+import fi.iki.apo.pmap.PMapAlternative;
+
+import java.util.List;
+import java.util.function.Function;
+
+public enum AutoPMapStrategy implements PMapAlternative {
+    SEQUENTIAL {
+        @Override
+        public <T, R> List<R> pmap(List<T> list, Function<T, R> f) {
+            return JavaApiMap.mapFor(list, f);
+        }
+    },
+    BLOCK {
+        @Override
+        public <T, R> List<R> pmap(List<T> list, Function<T, R> f) {
+            return MultipleOpsPerThreadMap.blockSize2000.reusedFixedThreadPool.pmap(list, f);
+        }
+    },
+    MODULO {
+        @Override
+        public <T, R> List<R> pmap(List<T> list, Function<T, R> f) {
+            return MultipleOpsPerThreadMap.modulo.pmapModuloFixedReused(list, f);
+        }
+    },
+    PARALLEL_STREAM {
+        @Override
+        public <T, R> List<R> pmap(List<T> list, Function<T, R> f) {
+            return JavaApiMap.pmapParallelStream(list, f);
+        }
+    }
+}
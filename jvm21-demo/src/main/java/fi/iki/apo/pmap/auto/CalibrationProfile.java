@@ -0,0 +1,59 @@
+package fi.iki.apo.pmap.auto;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+public record CalibrationProfile(int cpuCount, List<Entry> entries) {
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    public record Entry(int listSize, double itemNanos, AutoPMapStrategy fastest, Map<AutoPMapStrategy, Long> durationNanos) {
+    }
+
+    public static CalibrationProfile empty() {
+        return new CalibrationProfile(0, List.of());
+    }
+
+    // picks the measured entry closest to the given list size and item cost, both compared on a log scale
+    public AutoPMapStrategy resolveFastest(int listSize, double itemNanos) {
+        Entry closest = null;
+        double closestDistance = Double.MAX_VALUE;
+        for (var entry : entries) {
+            final var sizeDistance = logDistance(listSize, entry.listSize);
+            final var costDistance = logDistance(itemNanos, entry.itemNanos);
+            final var distance = sizeDistance * sizeDistance + costDistance * costDistance;
+            if (distance < closestDistance) {
+                closestDistance = distance;
+                closest = entry;
+            }
+        }
+        return closest != null ? closest.fastest : AutoPMapStrategy.PARALLEL_STREAM;
+    }
+
+    private static double logDistance(double a, double b) {
+        return Math.log1p(Math.max(a, 0)) - Math.log1p(Math.max(b, 0));
+    }
+
+    public static CalibrationProfile load(Path path) {
+        try (Reader reader = Files.newBufferedReader(path)) {
+            return gson.fromJson(reader, CalibrationProfile.class);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not load calibration profile " + path, e);
+        }
+    }
+
+    public void save(Path path) {
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            gson.toJson(this, writer);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not save calibration profile " + path, e);
+        }
+    }
+}
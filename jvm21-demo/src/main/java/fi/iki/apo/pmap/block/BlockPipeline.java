@@ -0,0 +1,86 @@
+package fi.iki.apo.pmap.block;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+// Fused map/filter/flatMap chain for PMapExecutorServiceBlock. Intermediate operations only compose the per-item
+// consumer chain. The terminal operation runs the whole chain in one loop per block into a per-block accumulator
+// and combines the block accumulators in list order, so no intermediate collections are created.
+public class BlockPipeline<T, E> {
+    private final PMapExecutorServiceBlock processor;
+    private final List<T> list;
+    private final Function<Consumer<E>, Consumer<T>> wrapSink;
+
+    BlockPipeline(PMapExecutorServiceBlock processor, List<T> list, Function<Consumer<E>, Consumer<T>> wrapSink) {
+        this.processor = processor;
+        this.list = list;
+        this.wrapSink = wrapSink;
+    }
+
+    public <R> BlockPipeline<T, R> map(Function<E, R> f) {
+        return new BlockPipeline<>(processor, list, downstream -> wrapSink.apply(e -> downstream.accept(f.apply(e))));
+    }
+
+    public BlockPipeline<T, E> filter(Predicate<E> predicate) {
+        return new BlockPipeline<>(processor, list, downstream -> wrapSink.apply(e -> {
+            if (predicate.test(e)) {
+                downstream.accept(e);
+            }
+        }));
+    }
+
+    public <R> BlockPipeline<T, R> flatMap(Function<E, ? extends Iterable<R>> f) {
+        return new BlockPipeline<>(processor, list, downstream -> wrapSink.apply(e -> {
+            for (R r : f.apply(e)) {
+                downstream.accept(r);
+            }
+        }));
+    }
+
+    public LongBlockPipeline<T> mapToLong(ToLongFunction<E> f) {
+        return new LongBlockPipeline<>(processor, list, downstream -> wrapSink.apply(e -> downstream.accept(f.applyAsLong(e))));
+    }
+
+    public <A> A collect(Supplier<A> supplier, BiConsumer<A, E> accumulator, BiConsumer<A, A> combiner) {
+        final var blockResults = processor.mapBlockRanges(processor.blockRangeFactory().resolveBlockRanges(list.size()), blockRange -> {
+            final var container = supplier.get();
+            final var sink = wrapSink.apply(e -> accumulator.accept(container, e));
+            final int upperLimit = blockRange.max();
+            for (int c = blockRange.min(); c <= upperLimit; c++) {
+                sink.accept(list.get(c));
+            }
+            return container;
+        });
+        if (blockResults.isEmpty()) {
+            return supplier.get();
+        }
+        final var result = blockResults.get(0);
+        for (int c = 1; c < blockResults.size(); c++) {
+            combiner.accept(result, blockResults.get(c));
+        }
+        return result;
+    }
+
+    public E reduce(E identity, BinaryOperator<E> accumulator) {
+        final var result = collect(
+                () -> new Object[]{identity},
+                (holder, e) -> holder[0] = accumulator.apply((E) holder[0], e),
+                (holder, other) -> holder[0] = accumulator.apply((E) holder[0], (E) other[0]));
+        return (E) result[0];
+    }
+
+    public List<E> toList() {
+        return collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+    }
+
+    public long count() {
+        return mapToLong(e -> 1L).sum();
+    }
+}
@@ -0,0 +1,65 @@
+package fi.iki.apo.pmap.block;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+// Reusable ForkJoin tasks for one list size. The block tasks are reinitialized and given the list, function and
+// destination of each call, so running a prepared plan doesn't allocate tasks, ranges or result wrappers.
+class BlockPlan extends RecursiveAction {
+    final int size;
+    private final BlockMapTask[] tasks;
+
+    BlockPlan(int size, List<BlockRange> blockRanges) {
+        this.size = size;
+        this.tasks = new BlockMapTask[blockRanges.size()];
+        for (int c = 0; c < tasks.length; c++) {
+            tasks[c] = new BlockMapTask(blockRanges.get(c).min(), blockRanges.get(c).max());
+        }
+    }
+
+    // the tasks are shared by calls with different types, the only unchecked casts are here
+    @SuppressWarnings("unchecked")
+    <T, R> void prepare(List<T> list, Function<T, R> f, Object[] dest) {
+        final var items = (List<Object>) list;
+        final var mapper = (Function<Object, Object>) f;
+        reinitialize();
+        for (var task : tasks) {
+            task.reinitialize();
+            task.list = items;
+            task.f = mapper;
+            task.dest = dest;
+        }
+    }
+
+    void clear() {
+        for (var task : tasks) {
+            task.list = null;
+            task.f = null;
+            task.dest = null;
+        }
+    }
+
+    @Override
+    protected void compute() {
+        invokeAll(tasks);
+    }
+
+    private static class BlockMapTask extends RecursiveAction {
+        private final int min;
+        private final int max;
+        private List<Object> list;
+        private Function<Object, Object> f;
+        private Object[] dest;
+
+        BlockMapTask(int min, int max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        protected void compute() {
+            BlockProcessor.mapBlock(list, dest, min, max, f);
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package fi.iki.apo.pmap.block;
 
+import fi.iki.apo.pmap.FailFastToken;
 import fi.iki.apo.pmap.JavaMapAlternatives;
 import fi.iki.apo.pmap.PMapAlternative;
 
 import java.util.List;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 
 import static fi.iki.apo.pmap.JavaMapAlternatives.getCpuCount;
@@ -14,8 +16,18 @@ public class BlockProcessor {
     public final PMapExecutorServiceBlock reusedFixedThreadPoolDoubleThreads;
     public final PMapExecutorServiceBlock reusedVirtualFixedThreadPool;
     public final PMapExecutorServiceBlock reusedVirtualFixedThreadPoolDoubleThreads;
-    public final PMapAlternative commonFJPool;
+    public final PMapFJBlock commonFJPool;
+    public final PMapPooledFJBlock pooledCommonFJPool;
     public final PMapAlternative reusedSimpleThreadPool;
+    public final PMapAlternative reusedWorkStealingSimpleThreadPool;
+    public final PMapExecutorServiceBlock callerRunsReusedFixedThreadPool;
+    public final PMapAlternative callerRunsReusedSimpleThreadPool;
+    public final PMapPrimitiveBlock primitiveReusedFixedThreadPool;
+    public final PMapPrimitiveBlock primitiveCommonFJPool;
+    public final PMapSpliteratorBlock spliteratorReusedFixedThreadPool;
+    public final PMapSpliteratorBlock spliteratorCommonFJPool;
+    public final PMapDeadlineBlock deadlineReusedFixedThreadPool;
+    public final PMapDeadlineBlock deadlineReusedVirtualFixedThreadPool;
     private BlockRangeFactory blockRangeFactory;
 
     public BlockProcessor(Integer blockSize, Integer blockCount) {
@@ -25,7 +37,18 @@ public class BlockProcessor {
         reusedVirtualFixedThreadPool = new PMapExecutorServiceBlock(blockRangeFactory, JavaMapAlternatives.reusedVirtualFixedThreadPool);
         reusedVirtualFixedThreadPoolDoubleThreads = new PMapExecutorServiceBlock(blockRangeFactory, JavaMapAlternatives.reusedVirtualFixedThreadPoolDoubleThreads);
         commonFJPool = new PMapFJBlock(blockRangeFactory);
+        pooledCommonFJPool = new PMapPooledFJBlock(blockRangeFactory);
         reusedSimpleThreadPool = new PMapSimpleThreadPoolBlock(blockRangeFactory, JavaMapAlternatives.reusedSimpleThreadPool);
+        reusedWorkStealingSimpleThreadPool = new PMapSimpleThreadPoolBlock(blockRangeFactory, JavaMapAlternatives.reusedWorkStealingSimpleThreadPool);
+        callerRunsReusedFixedThreadPool = new PMapExecutorServiceBlock(blockRangeFactory, JavaMapAlternatives.reusedFixedThreadPool, true);
+        callerRunsReusedSimpleThreadPool = new PMapSimpleThreadPoolBlock(blockRangeFactory, JavaMapAlternatives.reusedSimpleThreadPool, true);
+        primitiveReusedFixedThreadPool = new PMapPrimitiveBlock(blockRangeFactory, JavaMapAlternatives.reusedFixedThreadPool);
+        primitiveCommonFJPool = new PMapPrimitiveBlock(blockRangeFactory, ForkJoinPool.commonPool());
+        final int chunkSize = blockSize != null ? blockSize : 2000;
+        spliteratorReusedFixedThreadPool = new PMapSpliteratorBlock(blockRangeFactory, JavaMapAlternatives.reusedFixedThreadPool, chunkSize);
+        spliteratorCommonFJPool = new PMapSpliteratorBlock(blockRangeFactory, ForkJoinPool.commonPool(), chunkSize);
+        deadlineReusedFixedThreadPool = new PMapDeadlineBlock(blockRangeFactory, JavaMapAlternatives.reusedFixedThreadPool);
+        deadlineReusedVirtualFixedThreadPool = new PMapDeadlineBlock(blockRangeFactory, JavaMapAlternatives.reusedVirtualFixedThreadPool);
     }
 
     public static <T, R> void mapBlock(List<T> list, Object[] rArr, int lowerLimit, int upperLimit, Function<T, R> f) {
@@ -34,6 +57,20 @@ public class BlockProcessor {
         }
     }
 
+    public static <T, R> void mapBlock(List<T> list, Object[] rArr, int lowerLimit, int upperLimit, Function<T, R> f, FailFastToken failFast) {
+        int c = lowerLimit;
+        try {
+            for (; c <= upperLimit; c++) {
+                if (failFast.isFailed()) {
+                    return;
+                }
+                rArr[c] = f.apply(list.get(c));
+            }
+        } catch (Throwable t) {
+            failFast.fail(c, t);
+        }
+    }
+
     public <T, R> List<R> pmapBlockFixed(List<T> list, Function<T, R> f) {
         try (final var executorService = Executors.newFixedThreadPool(getCpuCount())) {
             return new PMapExecutorServiceBlock(blockRangeFactory, executorService).pmap(list, f);
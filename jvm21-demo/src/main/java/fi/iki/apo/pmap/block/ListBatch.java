@@ -0,0 +1,65 @@
+package fi.iki.apo.pmap.block;
+
+import fi.iki.apo.pmap.FailFastToken;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+// Many lists mapped as one. Items are addressed with a global index, offsets[l] is the global index of the first item of
+// list l, so blocks can cross list boundaries and the results of list l are flatResults[offsets[l]..offsets[l+1]).
+record ListBatch<T>(List<List<T>> lists, int[] offsets) {
+    static <T> ListBatch<T> of(List<List<T>> lists) {
+        final var offsets = new int[lists.size() + 1];
+        for (int l = 0; l < lists.size(); l++) {
+            offsets[l + 1] = offsets[l] + lists.get(l).size();
+        }
+        return new ListBatch<>(lists, offsets);
+    }
+
+    int size() {
+        return offsets[lists.size()];
+    }
+
+    <R> void mapBlock(Object[] rArr, int lowerLimit, int upperLimit, Function<T, R> f, FailFastToken failFast) {
+        int c = lowerLimit;
+        try {
+            for (int l = listIndexOf(lowerLimit); c <= upperLimit; l++) {
+                final var list = lists.get(l);
+                final int offset = offsets[l];
+                final int listUpperLimit = Math.min(upperLimit, offsets[l + 1] - 1);
+                for (; c <= listUpperLimit; c++) {
+                    if (failFast.isFailed()) {
+                        return;
+                    }
+                    rArr[c] = f.apply(list.get(c - offset));
+                }
+            }
+        } catch (Throwable t) {
+            failFast.fail(c, t);
+        }
+    }
+
+    <R> List<List<R>> views(List<R> flatResults) {
+        final var views = new ArrayList<List<R>>(lists.size());
+        for (int l = 0; l < lists.size(); l++) {
+            views.add(flatResults.subList(offsets[l], offsets[l + 1]));
+        }
+        return views;
+    }
+
+    // last list that starts at or before index, skips empty lists
+    private int listIndexOf(int index) {
+        int low = 0;
+        int high = lists.size() - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
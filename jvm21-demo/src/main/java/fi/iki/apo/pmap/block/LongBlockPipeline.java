@@ -0,0 +1,55 @@
+package fi.iki.apo.pmap.block;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+
+// long specialization of BlockPipeline, the per-block accumulator is a plain long
+public class LongBlockPipeline<T> {
+    private final PMapExecutorServiceBlock processor;
+    private final List<T> list;
+    private final Function<LongConsumer, Consumer<T>> wrapSink;
+
+    LongBlockPipeline(PMapExecutorServiceBlock processor, List<T> list, Function<LongConsumer, Consumer<T>> wrapSink) {
+        this.processor = processor;
+        this.list = list;
+        this.wrapSink = wrapSink;
+    }
+
+    public LongBlockPipeline<T> map(LongUnaryOperator f) {
+        return new LongBlockPipeline<>(processor, list, downstream -> wrapSink.apply(l -> downstream.accept(f.applyAsLong(l))));
+    }
+
+    public LongBlockPipeline<T> filter(LongPredicate predicate) {
+        return new LongBlockPipeline<>(processor, list, downstream -> wrapSink.apply(l -> {
+            if (predicate.test(l)) {
+                downstream.accept(l);
+            }
+        }));
+    }
+
+    public long reduce(long identity, LongBinaryOperator accumulator) {
+        final var blockResults = processor.mapBlockRanges(processor.blockRangeFactory().resolveBlockRanges(list.size()), blockRange -> {
+            final long[] holder = {identity};
+            final var sink = wrapSink.apply(l -> holder[0] = accumulator.applyAsLong(holder[0], l));
+            final int upperLimit = blockRange.max();
+            for (int c = blockRange.min(); c <= upperLimit; c++) {
+                sink.accept(list.get(c));
+            }
+            return holder[0];
+        });
+        long result = identity;
+        for (var blockResult : blockResults) {
+            result = accumulator.applyAsLong(result, blockResult);
+        }
+        return result;
+    }
+
+    public long sum() {
+        return reduce(0L, Long::sum);
+    }
+}
@@ -0,0 +1,124 @@
+package fi.iki.apo.pmap.block;
+
+import fi.iki.apo.pmap.FailFastToken;
+import fi.iki.apo.pmap.PMapTimeoutException;
+import fi.iki.apo.pmap.PartialResult;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Function;
+
+import static fi.iki.apo.pmap.JavaMapAlternatives.getCpuCount;
+
+// Block pmap with a time budget. Workers claim blocks one at a time and stop claiming once the deadline has passed.
+// The caller stops waiting at the deadline and gets the items that were mapped by then. Items of blocks that were
+// still running at the deadline count as completed up to the last item finished before it.
+public record PMapDeadlineBlock(
+        BlockRangeFactory blockRangeFactory,
+        ExecutorService executorService
+) {
+    public <T, R> List<R> pmapOrThrow(List<T> list, Function<T, R> f, Duration budget) {
+        final var result = pmapWithin(list, f, budget);
+        if (!result.isComplete()) {
+            throw new PMapTimeoutException(result.completed(), list.size());
+        }
+        return result.results();
+    }
+
+    public <T, R> PartialResult<R> pmapWithin(List<T> list, Function<T, R> f, Duration budget) {
+        return pmapUntilNanos(list, f, System.nanoTime() + budget.toNanos());
+    }
+
+    public <T, R> PartialResult<R> pmapUntil(List<T> list, Function<T, R> f, Instant deadline) {
+        return pmapUntilNanos(list, f, System.nanoTime() + Duration.between(Instant.now(), deadline).toNanos());
+    }
+
+    private <T, R> PartialResult<R> pmapUntilNanos(List<T> list, Function<T, R> f, long deadlineNanos) {
+        final var blockRanges = blockRangeFactory.resolveBlockRanges(list.size());
+        final var rArr = new Object[list.size()];
+        final var progress = new AtomicIntegerArray(blockRanges.size());
+        final var nextBlock = new AtomicInteger();
+        final var failFast = new FailFastToken();
+        final var abandoned = new AtomicBoolean();
+        final int workerCount = Math.min(blockRanges.size(), getCpuCount());
+        final var finished = new CountDownLatch(workerCount);
+        final var futures = new ArrayList<Future<?>>(workerCount);
+        for (int w = 0; w < workerCount; w++) {
+            futures.add(executorService.submit(() -> {
+                try {
+                    mapClaimedBlocks(list, f, rArr, blockRanges, nextBlock, progress, failFast, abandoned, deadlineNanos);
+                } finally {
+                    finished.countDown();
+                }
+            }));
+        }
+        boolean allFinished;
+        try {
+            allFinished = finished.await(Math.max(deadlineNanos - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            allFinished = false;
+        }
+        if (!allFinished) {
+            // failures caused by the interrupts below are not failures of the mapping function
+            abandoned.set(true);
+            futures.forEach(future -> future.cancel(true));
+        }
+        failFast.throwIfFailed();
+        return snapshot(rArr, blockRanges, progress, allFinished);
+    }
+
+    private static <T, R> void mapClaimedBlocks(List<T> list, Function<T, R> f, Object[] rArr, List<BlockRange> blockRanges,
+                                                AtomicInteger nextBlock, AtomicIntegerArray progress, FailFastToken failFast, AtomicBoolean abandoned,
+                                                long deadlineNanos) {
+        int blockIndex;
+        while (System.nanoTime() < deadlineNanos && !failFast.isFailed() && (blockIndex = nextBlock.getAndIncrement()) < blockRanges.size()) {
+            final var blockRange = blockRanges.get(blockIndex);
+            int c = blockRange.min();
+            try {
+                for (; c <= blockRange.max(); c++) {
+                    if (failFast.isFailed() || abandoned.get()) {
+                        return;
+                    }
+                    rArr[c] = f.apply(list.get(c));
+                    progress.lazySet(blockIndex, c - blockRange.min() + 1);
+                }
+            } catch (Throwable t) {
+                if (!abandoned.get()) {
+                    failFast.fail(c, t);
+                }
+                return;
+            }
+        }
+    }
+
+    private static <R> PartialResult<R> snapshot(Object[] rArr, List<BlockRange> blockRanges, AtomicIntegerArray progress, boolean allFinished) {
+        final var completed = new BitSet(rArr.length);
+        if (allFinished) {
+            for (int b = 0; b < blockRanges.size(); b++) {
+                completed.set(blockRanges.get(b).min(), blockRanges.get(b).min() + progress.get(b));
+            }
+            return new PartialResult<>(Arrays.asList((R[]) rArr), completed);
+        }
+        // workers may still be running, copy only the items that were finished before the deadline
+        final var results = new Object[rArr.length];
+        for (int b = 0; b < blockRanges.size(); b++) {
+            final int min = blockRanges.get(b).min();
+            final int done = progress.get(b);
+            System.arraycopy(rArr, min, results, min, done);
+            completed.set(min, min + done);
+        }
+        return new PartialResult<>(Arrays.asList((R[]) results), completed);
+    }
+}
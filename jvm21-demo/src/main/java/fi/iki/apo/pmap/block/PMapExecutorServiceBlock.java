@@ -1,30 +1,67 @@
 package fi.iki.apo.pmap.block;
 
+import fi.iki.apo.pmap.FailFastToken;
 import fi.iki.apo.pmap.MultipleOpsPerThreadMap;
 import fi.iki.apo.pmap.PMapAlternative;
 import fi.iki.apo.pmap.TasksAndArray;
+import fi.iki.apo.util.CollectionHelpers;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static fi.iki.apo.pmap.JavaMapAlternatives.getCpuCount;
 
 public record PMapExecutorServiceBlock(
         BlockRangeFactory blockRangeFactory,
-        ExecutorService executorService
+        ExecutorService executorService,
+        boolean callerRuns
 ) implements PMapAlternative {
+    // stands for a null key in groupByStriped, ConcurrentHashMap doesn't allow null keys
+    private static final Object NULL_KEY = new Object();
+
+    public PMapExecutorServiceBlock(BlockRangeFactory blockRangeFactory, ExecutorService executorService) {
+        this(blockRangeFactory, executorService, false);
+    }
+
     @Override
     public <T, R> List<R> pmap(List<T> list, Function<T, R> f) {
+        final var failFast = new FailFastToken();
         final var tasksWithResultArray = TasksAndArray.createBlockTasks(list.size(),
                 blockRangeFactory.resolveBlockRanges(list.size()),
                 (arr, min, max) -> (Callable<Boolean>) () -> {
-                    BlockProcessor.mapBlock(list, arr, min, max, f);
+                    BlockProcessor.mapBlock(list, arr, min, max, f, failFast);
+                    return true;
+                });
+        if (callerRuns) {
+            return MultipleOpsPerThreadMap.executeTasksCallerRuns(executorService, getCpuCount(), tasksWithResultArray, failFast);
+        }
+        return MultipleOpsPerThreadMap.executeTasks(executorService, tasksWithResultArray, failFast);
+    }
+
+    public <T, R> List<List<R>> pmapAll(List<List<T>> lists, Function<T, R> f) {
+        final var batch = ListBatch.of(lists);
+        final var failFast = new FailFastToken();
+        final var tasksWithResultArray = TasksAndArray.createBlockTasks(batch.size(),
+                blockRangeFactory.resolveBlockRanges(batch.size()),
+                (arr, min, max) -> (Callable<Boolean>) () -> {
+                    batch.mapBlock(arr, min, max, f, failFast);
                     return true;
                 });
-        return MultipleOpsPerThreadMap.executeTasks(executorService, tasksWithResultArray);
+        return batch.views(MultipleOpsPerThreadMap.executeTasks(executorService, tasksWithResultArray, failFast));
+    }
+
+    public <T> BlockPipeline<T, T> pipeline(List<T> list) {
+        return new BlockPipeline<>(this, list, downstream -> downstream);
     }
 
     public <T, R, Z> Z mapReduce(List<T> list, Function<T, R> map, Function<List<List<R>>, Z> reduce) {
@@ -90,4 +127,210 @@ public record PMapExecutorServiceBlock(
         return Arrays.asList(rArr);
     }
 
+    // Filter without intermediate lists: the predicate results of each block are stored in a bitmap and counted,
+    // an exclusive prefix sum of the counts gives each block its offset and survivors are copied directly to an
+    // exactly sized result array.
+    public <T> List<T> filterScatter(List<T> list, Predicate<T> predicate) {
+        final var blockRanges = blockRangeFactory.resolveBlockRanges(list.size());
+        final var bitmaps = new long[blockRanges.size()][];
+        final var counts = new int[blockRanges.size()];
+        final var evaluateTasks = new ArrayList<Callable<Boolean>>(blockRanges.size());
+        for (int b = 0; b < blockRanges.size(); b++) {
+            final int blockIndex = b;
+            final var blockRange = blockRanges.get(b);
+            evaluateTasks.add(() -> {
+                final int min = blockRange.min();
+                final int upperLimit = blockRange.max();
+                final var bitmap = new long[(blockRange.size() + 63) >>> 6];
+                int count = 0;
+                for (int c = min; c <= upperLimit; c++) {
+                    if (predicate.test(list.get(c))) {
+                        bitmap[(c - min) >>> 6] |= 1L << (c - min);
+                        count++;
+                    }
+                }
+                bitmaps[blockIndex] = bitmap;
+                counts[blockIndex] = count;
+                return true;
+            });
+        }
+        MultipleOpsPerThreadMap.executeTasks(executorService, evaluateTasks);
+        final var offsets = new int[blockRanges.size()];
+        int fullSize = 0;
+        for (int b = 0; b < counts.length; b++) {
+            offsets[b] = fullSize;
+            fullSize += counts[b];
+        }
+        final var rArr = new Object[fullSize];
+        final var scatterTasks = new ArrayList<Callable<Boolean>>(blockRanges.size());
+        for (int b = 0; b < blockRanges.size(); b++) {
+            if (counts[b] == 0) {
+                continue;
+            }
+            final var bitmap = bitmaps[b];
+            final int min = blockRanges.get(b).min();
+            final int offset = offsets[b];
+            scatterTasks.add(() -> {
+                int dest = offset;
+                for (int w = 0; w < bitmap.length; w++) {
+                    long word = bitmap[w];
+                    while (word != 0) {
+                        rArr[dest++] = list.get(min + (w << 6) + Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+                return true;
+            });
+        }
+        MultipleOpsPerThreadMap.executeTasks(executorService, scatterTasks);
+        return Arrays.asList((T[]) rArr);
+    }
+
+    // Parallel version of CollectionHelpers.groupBy. Each block groups into a local map, block maps are merged in
+    // list order so items keep their order within each group.
+    public <I, K> Map<K, List<I>> groupBy(List<I> list, Function<I, K> keyFn) {
+        final var blockRanges = blockRangeFactory.resolveBlockRanges(list.size());
+        final List<Map<K, List<I>>> blockMaps = mapBlockRanges(blockRanges, blockRange -> {
+            final var map = new HashMap<K, List<I>>();
+            final int upperLimit = blockRange.max();
+            for (int c = blockRange.min(); c <= upperLimit; c++) {
+                final var item = list.get(c);
+                map.computeIfAbsent(keyFn.apply(item), key -> new ArrayList<>()).add(item);
+            }
+            return map;
+        });
+        if (blockMaps.size() == 1) {
+            return blockMaps.get(0);
+        }
+        final var result = new HashMap<K, List<I>>();
+        for (var blockMap : blockMaps) {
+            blockMap.forEach((key, items) -> {
+                final var group = result.putIfAbsent(key, items);
+                if (group != null) {
+                    group.addAll(items);
+                }
+            });
+        }
+        return result;
+    }
+
+    // groupBy for large key spaces. Keys are resolved once per item and each block sorts its item indexes by key
+    // stripe. Each stripe is then merged by its own task, visiting the blocks in list order, into a shared
+    // ConcurrentHashMap. Stripes own disjoint keys, so the merge runs in parallel without contention on any group.
+    // A null key is merged as NULL_KEY and the result is copied to a HashMap only if there was one.
+    @SuppressWarnings("unchecked")
+    public <I, K> Map<K, List<I>> groupByStriped(List<I> list, Function<I, K> keyFn, int stripeCount) {
+        final var blockRanges = blockRangeFactory.resolveBlockRanges(list.size());
+        final var keys = new Object[list.size()];
+        final List<StripedBlock> stripedBlocks = mapBlockRanges(blockRanges, blockRange -> {
+            final int min = blockRange.min();
+            final var stripeOfItem = new int[blockRange.size()];
+            final var stripeStart = new int[stripeCount + 1];
+            for (int c = 0; c < stripeOfItem.length; c++) {
+                final Object key = keyFn.apply(list.get(min + c));
+                keys[min + c] = key == null ? NULL_KEY : key;
+                stripeOfItem[c] = Math.floorMod(Objects.hashCode(key), stripeCount);
+                stripeStart[stripeOfItem[c] + 1]++;
+            }
+            for (int s = 0; s < stripeCount; s++) {
+                stripeStart[s + 1] += stripeStart[s];
+            }
+            final var next = Arrays.copyOf(stripeStart, stripeCount);
+            final var indexesByStripe = new int[stripeOfItem.length];
+            for (int c = 0; c < stripeOfItem.length; c++) {
+                indexesByStripe[next[stripeOfItem[c]]++] = min + c;
+            }
+            return new StripedBlock(indexesByStripe, stripeStart);
+        });
+        final var result = new ConcurrentHashMap<Object, List<I>>();
+        final var tasks = new ArrayList<Callable<Boolean>>(stripeCount);
+        for (int s = 0; s < stripeCount; s++) {
+            final int stripe = s;
+            tasks.add(() -> {
+                for (var stripedBlock : stripedBlocks) {
+                    final var indexes = stripedBlock.indexesByStripe();
+                    final int end = stripedBlock.stripeStart()[stripe + 1];
+                    for (int c = stripedBlock.stripeStart()[stripe]; c < end; c++) {
+                        final int index = indexes[c];
+                        result.computeIfAbsent(keys[index], key -> new ArrayList<>()).add(list.get(index));
+                    }
+                }
+                return true;
+            });
+        }
+        MultipleOpsPerThreadMap.executeTasks(executorService, tasks);
+        final var nullGroup = result.remove(NULL_KEY);
+        if (nullGroup == null) {
+            return (Map<K, List<I>>) (Map<?, List<I>>) result;
+        }
+        final var withNullKey = new HashMap<K, List<I>>((Map<K, List<I>>) (Map<?, List<I>>) result);
+        withNullKey.put(null, nullGroup);
+        return withNullKey;
+    }
+
+    private record StripedBlock(int[] indexesByStripe, int[] stripeStart) {
+    }
+
+    public <I> CollectionHelpers.SplitResult<I> partition(List<I> list, Predicate<I> predicate) {
+        final var blockRanges = blockRangeFactory.resolveBlockRanges(list.size());
+        final List<CollectionHelpers.SplitResult<I>> blockResults = mapBlockRanges(blockRanges, blockRange -> {
+            final var good = new ArrayList<I>();
+            final var bad = new ArrayList<I>();
+            final int upperLimit = blockRange.max();
+            for (int c = blockRange.min(); c <= upperLimit; c++) {
+                final var item = list.get(c);
+                if (predicate.test(item)) {
+                    good.add(item);
+                } else {
+                    bad.add(item);
+                }
+            }
+            return new CollectionHelpers.SplitResult<>(good, bad);
+        });
+        int goodSize = 0;
+        for (var blockResult : blockResults) {
+            goodSize += blockResult.good.size();
+        }
+        final var good = new ArrayList<I>(goodSize);
+        final var bad = new ArrayList<I>(list.size() - goodSize);
+        for (var blockResult : blockResults) {
+            good.addAll(blockResult.good);
+            bad.addAll(blockResult.bad);
+        }
+        return new CollectionHelpers.SplitResult<>(good, bad);
+    }
+
+    public <I, K> Map<K, Long> countBy(List<I> list, Function<I, K> keyFn) {
+        final var blockRanges = blockRangeFactory.resolveBlockRanges(list.size());
+        final List<Map<K, long[]>> blockMaps = mapBlockRanges(blockRanges, blockRange -> {
+            final var map = new HashMap<K, long[]>();
+            final int upperLimit = blockRange.max();
+            for (int c = blockRange.min(); c <= upperLimit; c++) {
+                map.computeIfAbsent(keyFn.apply(list.get(c)), key -> new long[1])[0]++;
+            }
+            return map;
+        });
+        final var result = new HashMap<K, Long>();
+        for (var blockMap : blockMaps) {
+            blockMap.forEach((key, count) -> result.merge(key, count[0], Long::sum));
+        }
+        return result;
+    }
+
+    // One task per block range. pmap(blockRanges, ...) would split the list of ranges into blocks again and run
+    // all of them in one task when there are fewer ranges than blockSize.
+    <R> List<R> mapBlockRanges(List<BlockRange> blockRanges, Function<BlockRange, R> f) {
+        final var rArr = new Object[blockRanges.size()];
+        final var tasks = new ArrayList<Callable<Boolean>>(blockRanges.size());
+        for (int b = 0; b < blockRanges.size(); b++) {
+            final int blockIndex = b;
+            final var blockRange = blockRanges.get(b);
+            tasks.add(() -> {
+                rArr[blockIndex] = f.apply(blockRange);
+                return true;
+            });
+        }
+        MultipleOpsPerThreadMap.executeTasks(executorService, tasks);
+        return Arrays.asList((R[]) rArr);
+    }
 }
@@ -1,5 +1,6 @@
 package fi.iki.apo.pmap.block;
 
+import fi.iki.apo.pmap.FailFastToken;
 import fi.iki.apo.pmap.MultipleOpsPerThreadMap;
 import fi.iki.apo.pmap.PMapAlternative;
 import fi.iki.apo.pmap.TasksAndArray;
@@ -12,9 +13,19 @@ public record PMapFJBlock(BlockRangeFactory blockRangeFactory) implements PMapAl
     @Override
     public <T, R> List<R> pmap(List<T> list, Function<T, R> f) {
         int size = list.size();
+        final var failFast = new FailFastToken();
         final var result = TasksAndArray.createBlockTasks(size,
                 blockRangeFactory.resolveBlockRanges(size),
-                (arr, min, max) -> new ForkJoinProcessTask(null, () -> BlockProcessor.mapBlock(list, arr, min, max, f)));
-        return MultipleOpsPerThreadMap.executeTasksInFJP(result);
+                (arr, min, max) -> new ForkJoinProcessTask(null, () -> BlockProcessor.mapBlock(list, arr, min, max, f, failFast)));
+        return MultipleOpsPerThreadMap.executeTasksInFJP(result, failFast);
+    }
+
+    public <T, R> List<List<R>> pmapAll(List<List<T>> lists, Function<T, R> f) {
+        final var batch = ListBatch.of(lists);
+        final var failFast = new FailFastToken();
+        final var result = TasksAndArray.createBlockTasks(batch.size(),
+                blockRangeFactory.resolveBlockRanges(batch.size()),
+                (arr, min, max) -> new ForkJoinProcessTask(null, () -> batch.mapBlock(arr, min, max, f, failFast)));
+        return batch.views(MultipleOpsPerThreadMap.executeTasksInFJP(result, failFast));
     }
 }
@@ -0,0 +1,72 @@
+package fi.iki.apo.pmap.block;
+
+import fi.iki.apo.pmap.PMapAlternative;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+// Block pmap for repeated calls on small lists. BlockPlans are pooled by list size in a small lock-free table shared
+// by all callers (also short-lived virtual threads), so in steady state pmapInto() allocates nothing besides the
+// results of f. A plan is owned by one call at a time: it's removed from the table for the duration of the call.
+public class PMapPooledFJBlock implements PMapAlternative {
+    private static final int poolSlots = 64;
+    private static final int probeCount = 4;
+
+    private final BlockRangeFactory blockRangeFactory;
+    private final AtomicReferenceArray<BlockPlan> plans = new AtomicReferenceArray<>(poolSlots);
+
+    public PMapPooledFJBlock(BlockRangeFactory blockRangeFactory) {
+        this.blockRangeFactory = blockRangeFactory;
+    }
+
+    @Override
+    public <T, R> List<R> pmap(List<T> list, Function<T, R> f) {
+        return Arrays.asList(pmapInto(list, f, (R[]) new Object[list.size()]));
+    }
+
+    public <T, R> R[] pmapInto(List<T> list, Function<T, R> f, R[] dest) {
+        final int size = list.size();
+        if (dest.length < size) {
+            throw new IllegalArgumentException("dest length " + dest.length + " is smaller than list size " + size);
+        }
+        if (size == 0) {
+            return dest;
+        }
+        final var plan = acquirePlan(size);
+        plan.prepare(list, f, dest);
+        // if f throws, invoke() returns while stolen block tasks may still be running, so the plan is dropped
+        ForkJoinPool.commonPool().invoke(plan);
+        plan.clear();
+        releasePlan(plan);
+        return dest;
+    }
+
+    private BlockPlan acquirePlan(int size) {
+        final int firstSlot = firstSlot(size);
+        for (int c = 0; c < probeCount; c++) {
+            final int slot = (firstSlot + c) & (poolSlots - 1);
+            final var plan = plans.get(slot);
+            if (plan != null && plan.size == size && plans.compareAndSet(slot, plan, null)) {
+                return plan;
+            }
+        }
+        return new BlockPlan(size, blockRangeFactory.resolveBlockRanges(size));
+    }
+
+    private void releasePlan(BlockPlan plan) {
+        final int firstSlot = firstSlot(plan.size);
+        for (int c = 0; c < probeCount; c++) {
+            if (plans.compareAndSet((firstSlot + c) & (poolSlots - 1), null, plan)) {
+                return;
+            }
+        }
+        plans.set(firstSlot, plan);
+    }
+
+    private static int firstSlot(int size) {
+        return (size * 0x9E3779B9) >>> 26;
+    }
+}
@@ -0,0 +1,27 @@
+package fi.iki.apo.pmap.block;
+
+import fi.iki.apo.pmap.MultipleOpsPerThreadMap;
+import fi.iki.apo.pmap.primitive.PMapPrimitiveAlternative;
+import fi.iki.apo.pmap.primitive.RangeTask;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+public record PMapPrimitiveBlock(
+        BlockRangeFactory blockRangeFactory,
+        ExecutorService executorService
+) implements PMapPrimitiveAlternative {
+    @Override
+    public void executeRanges(int size, RangeTask rangeTask) {
+        final var blockRanges = blockRangeFactory.resolveBlockRanges(size);
+        final var tasks = new ArrayList<Callable<Boolean>>(blockRanges.size());
+        for (var blockRange : blockRanges) {
+            tasks.add(() -> {
+                rangeTask.run(blockRange.min(), blockRange.max(), 1);
+                return true;
+            });
+        }
+        MultipleOpsPerThreadMap.executeTasks(executorService, tasks);
+    }
+}
@@ -1,5 +1,6 @@
 package fi.iki.apo.pmap.block;
 
+import fi.iki.apo.pmap.FailFastToken;
 import fi.iki.apo.pmap.MultipleOpsPerThreadMap;
 import fi.iki.apo.pmap.PMapAlternative;
 import fi.iki.apo.pmap.TasksAndArray;
@@ -11,16 +12,25 @@ import java.util.function.Function;
 
 public record PMapSimpleThreadPoolBlock(
         BlockRangeFactory blockRangeFactory,
-        SimpleThreadPool pool
+        SimpleThreadPool pool,
+        boolean callerRuns
 ) implements PMapAlternative {
+    public PMapSimpleThreadPoolBlock(BlockRangeFactory blockRangeFactory, SimpleThreadPool pool) {
+        this(blockRangeFactory, pool, false);
+    }
+
     @Override
     public <T, R> List<R> pmap(List<T> list, Function<T, R> f) {
+        final var failFast = new FailFastToken();
         final var tasksWithResultArray = TasksAndArray.createBlockTasks(list.size(),
                 blockRangeFactory.resolveBlockRanges(list.size()),
                 (arr, min, max) -> (Callable<Boolean>) () -> {
-                    BlockProcessor.mapBlock(list, arr, min, max, f);
+                    BlockProcessor.mapBlock(list, arr, min, max, f, failFast);
                     return true;
                 });
-        return MultipleOpsPerThreadMap.executeTasksInSimplePool(pool, tasksWithResultArray);
+        if (callerRuns) {
+            return MultipleOpsPerThreadMap.executeTasksCallerRuns(pool, pool.getParallelism(), tasksWithResultArray, failFast);
+        }
+        return MultipleOpsPerThreadMap.executeTasksInSimplePool(pool, tasksWithResultArray, failFast);
     }
 }
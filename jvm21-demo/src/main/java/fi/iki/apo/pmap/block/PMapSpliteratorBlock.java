@@ -0,0 +1,112 @@
+package fi.iki.apo.pmap.block;
+
+import fi.iki.apo.pmap.MultipleOpsPerThreadMap;
+import fi.iki.apo.pmap.PMapAlternative;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+// pmap for sources without cheap list.get(index). Sized sources are copied once to an array that is then mapped
+// in place by blocks. Unsized sources are read into chunkSize buffers and each full buffer is submitted while the
+// source is still being read.
+public record PMapSpliteratorBlock(
+        BlockRangeFactory blockRangeFactory,
+        ExecutorService executorService,
+        int chunkSize
+) implements PMapAlternative {
+    @Override
+    public <T, R> List<R> pmap(List<T> list, Function<T, R> f) {
+        if (list instanceof RandomAccess) {
+            return new PMapExecutorServiceBlock(blockRangeFactory, executorService).pmap(list, f);
+        }
+        return pmap(list.spliterator(), f);
+    }
+
+    public <T, R> List<R> pmap(Iterable<T> iterable, Function<T, R> f) {
+        if (iterable instanceof List<T> list) {
+            return pmap(list, f);
+        }
+        return pmap(iterable.spliterator(), f);
+    }
+
+    public <T, R> List<R> pmap(Stream<T> stream, Function<T, R> f) {
+        return pmap(stream.spliterator(), f);
+    }
+
+    public <T, R> List<R> pmap(Spliterator<T> spliterator, Function<T, R> f) {
+        if (spliterator.hasCharacteristics(Spliterator.SIZED)) {
+            return pmapSized(spliterator, f);
+        }
+        return pmapChunked(spliterator, f);
+    }
+
+    private <T, R> List<R> pmapSized(Spliterator<T> spliterator, Function<T, R> f) {
+        final var arr = new Object[(int) spliterator.getExactSizeIfKnown()];
+        final int[] index = {0};
+        spliterator.forEachRemaining(t -> arr[index[0]++] = t);
+        final var blockRanges = blockRangeFactory.resolveBlockRanges(arr.length);
+        final var tasks = new ArrayList<Callable<Boolean>>(blockRanges.size());
+        for (var blockRange : blockRanges) {
+            tasks.add(() -> {
+                mapArrayBlockInPlace(arr, blockRange.min(), blockRange.max(), f);
+                return true;
+            });
+        }
+        MultipleOpsPerThreadMap.executeTasks(executorService, tasks);
+        return Arrays.asList((R[]) arr);
+    }
+
+    private <T, R> List<R> pmapChunked(Spliterator<T> spliterator, Function<T, R> f) {
+        final var futures = new ArrayList<Future<Object[]>>();
+        try {
+            int size = 0;
+            boolean hasMore = true;
+            while (hasMore) {
+                final var chunk = new Object[chunkSize];
+                final int count = fillChunk(spliterator, chunk);
+                hasMore = count == chunkSize;
+                if (count > 0) {
+                    final var filled = hasMore ? chunk : Arrays.copyOf(chunk, count);
+                    futures.add(executorService.submit(() -> {
+                        mapArrayBlockInPlace(filled, 0, filled.length - 1, f);
+                        return filled;
+                    }));
+                    size += count;
+                }
+            }
+            final var rArr = new Object[size];
+            int offset = 0;
+            for (var future : futures) {
+                final var mapped = future.get();
+                System.arraycopy(mapped, 0, rArr, offset, mapped.length);
+                offset += mapped.length;
+            }
+            return Arrays.asList((R[]) rArr);
+        } catch (Exception e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static <T> int fillChunk(Spliterator<T> spliterator, Object[] chunk) {
+        final int[] count = {0};
+        while (count[0] < chunk.length && spliterator.tryAdvance(t -> chunk[count[0]++] = t)) {
+            // tryAdvance stores the item
+        }
+        return count[0];
+    }
+
+    private static <T, R> void mapArrayBlockInPlace(Object[] arr, int lowerLimit, int upperLimit, Function<T, R> f) {
+        for (int c = lowerLimit; c <= upperLimit; c++) {
+            arr[c] = f.apply((T) arr[c]);
+        }
+    }
+}
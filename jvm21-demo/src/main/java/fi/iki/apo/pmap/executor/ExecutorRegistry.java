@@ -0,0 +1,80 @@
+package fi.iki.apo.pmap.executor;
+
+import fi.iki.apo.pmap.simplethreadpool.SimpleThreadPool;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Creates named, instrumented executors and exports them over JMX as <domain>:type=Executor,name=<name>.
+// Timing of the individual tasks can be turned off with -Dpmap.executorTiming=false, the JMH benchmarks do that so
+// the wrapper does not show up in their scores. Task counts are kept either way.
+public class ExecutorRegistry {
+    public static final String TIMING_PROPERTY = "pmap.executorTiming";
+    private final String jmxDomain;
+    private final boolean timing;
+    private final Map<String, ManagedExecutor> executors = new ConcurrentHashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    public ExecutorRegistry(String jmxDomain) {
+        this(jmxDomain, Boolean.parseBoolean(System.getProperty(TIMING_PROPERTY, "true")));
+    }
+
+    public ExecutorRegistry(String jmxDomain, boolean timing) {
+        this.jmxDomain = jmxDomain;
+        this.timing = timing;
+    }
+
+    public ThreadPoolExecutor fixedThreadPool(String name, int poolSize, ThreadFactory threadFactory) {
+        final var stats = new ExecutorStats(timing);
+        final var executor = new InstrumentedThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), threadFactory, new ThreadPoolExecutor.AbortPolicy(), stats);
+        register(new ManagedExecutor(name, stats, () -> executor.getQueue().size(), executor::getActiveCount,
+                executor::getPoolSize, executor::shutdownNow));
+        return executor;
+    }
+
+    public SimpleThreadPool simpleThreadPool(String name, int corePoolSize, int maximumPoolSize, Duration idleTimeout, boolean workStealing) {
+        final var stats = new ExecutorStats(timing);
+        final var pool = new SimpleThreadPool(corePoolSize, maximumPoolSize, idleTimeout, workStealing, stats);
+        register(new ManagedExecutor(name, stats, pool::getQueueSize, pool::getActiveCount, pool::getPoolSize, pool::shutdown));
+        return pool;
+    }
+
+    public ManagedExecutor get(String name) {
+        return executors.get(name);
+    }
+
+    public synchronized List<ManagedExecutor> executors() {
+        return names.stream().map(executors::get).toList();
+    }
+
+    public void shutdownAll() {
+        executors().forEach(ManagedExecutor::shutdown);
+    }
+
+    private synchronized void register(ManagedExecutor executor) {
+        if (executors.putIfAbsent(executor.getName(), executor) != null) {
+            throw new IllegalArgumentException("Executor " + executor.getName() + " is already registered");
+        }
+        names.add(executor.getName());
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(executor, objectName(executor.getName()));
+        } catch (JMException e) {
+            throw new RuntimeException("Registering executor " + executor.getName() + " to JMX failed", e);
+        }
+    }
+
+    public ObjectName objectName(String name) throws JMException {
+        return new ObjectName(jmxDomain + ":type=Executor,name=" + ObjectName.quote(name));
+    }
+}
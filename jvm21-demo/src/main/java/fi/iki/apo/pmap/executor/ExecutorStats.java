@@ -0,0 +1,56 @@
+package fi.iki.apo.pmap.executor;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Task counters and wait/run time histograms of one executor. wrap() timestamps a task when it is queued so the
+// time spent in the queue and the time spent running can be told apart.
+public class ExecutorStats {
+    private final boolean timing;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    public final LatencyHistogram waitTime = new LatencyHistogram();
+    public final LatencyHistogram runTime = new LatencyHistogram();
+
+    public ExecutorStats(boolean timing) {
+        this.timing = timing;
+    }
+
+    public Runnable wrap(Runnable task) {
+        submitted.increment();
+        if (!timing) {
+            return task;
+        }
+        final long queuedAt = System.nanoTime();
+        return () -> {
+            final long startedAt = System.nanoTime();
+            waitTime.record(startedAt - queuedAt);
+            try {
+                task.run();
+            } finally {
+                runTime.record(System.nanoTime() - startedAt);
+            }
+        };
+    }
+
+    // called by the executor after every task, also when timing is off
+    public void completed() {
+        completed.increment();
+    }
+
+    public void rejected() {
+        rejected.increment();
+    }
+
+    public long submittedCount() {
+        return submitted.sum();
+    }
+
+    public long completedCount() {
+        return completed.sum();
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,31 @@
+package fi.iki.apo.pmap.executor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+    private final ExecutorStats stats;
+
+    public InstrumentedThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+                                          BlockingQueue<Runnable> workQueue, ThreadFactory threadFactory,
+                                          RejectedExecutionHandler handler, ExecutorStats stats) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, (r, executor) -> {
+            stats.rejected();
+            handler.rejectedExecution(r, executor);
+        });
+        this.stats = stats;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(stats.wrap(command));
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        stats.completed();
+    }
+}
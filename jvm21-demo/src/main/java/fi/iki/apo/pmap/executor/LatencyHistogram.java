@@ -0,0 +1,52 @@
+package fi.iki.apo.pmap.executor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free histogram of nanosecond durations with power of two buckets. Bucket i counts durations in [2^(i-1), 2^i),
+// so percentiles are accurate to a factor of two.
+public class LatencyHistogram {
+    private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        final long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public double meanNanos() {
+        final long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    public long maxNanos() {
+        return max.get();
+    }
+
+    // upper bound of the bucket that contains the percentile
+    public long percentileNanos(double percentile) {
+        final long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(percentile / 100.0 * n);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return i == 0 ? 0 : Math.min((1L << Math.min(i, 62)) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+}
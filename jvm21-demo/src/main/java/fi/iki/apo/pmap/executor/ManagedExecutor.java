@@ -0,0 +1,106 @@
+package fi.iki.apo.pmap.executor;
+
+import java.util.function.IntSupplier;
+
+// Registry entry for one named executor. The gauges read the live state of the executor, the counters and
+// histograms come from its ExecutorStats.
+public class ManagedExecutor implements ManagedExecutorMXBean {
+    private final String name;
+    private final ExecutorStats stats;
+    private final IntSupplier queueDepth;
+    private final IntSupplier activeWorkers;
+    private final IntSupplier poolSize;
+    private final Runnable shutdown;
+
+    ManagedExecutor(String name, ExecutorStats stats, IntSupplier queueDepth, IntSupplier activeWorkers, IntSupplier poolSize, Runnable shutdown) {
+        this.name = name;
+        this.stats = stats;
+        this.queueDepth = queueDepth;
+        this.activeWorkers = activeWorkers;
+        this.poolSize = poolSize;
+        this.shutdown = shutdown;
+    }
+
+    public ExecutorStats stats() {
+        return stats;
+    }
+
+    void shutdown() {
+        shutdown.run();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public int getActiveWorkers() {
+        return activeWorkers.getAsInt();
+    }
+
+    @Override
+    public int getPoolSize() {
+        return poolSize.getAsInt();
+    }
+
+    @Override
+    public long getSubmittedTasks() {
+        return stats.submittedCount();
+    }
+
+    @Override
+    public long getCompletedTasks() {
+        return stats.completedCount();
+    }
+
+    @Override
+    public long getRejectedTasks() {
+        return stats.rejectedCount();
+    }
+
+    @Override
+    public double getWaitTimeMeanMicros() {
+        return stats.waitTime.meanNanos() / 1000.0;
+    }
+
+    @Override
+    public double getWaitTimeP50Micros() {
+        return stats.waitTime.percentileNanos(50) / 1000.0;
+    }
+
+    @Override
+    public double getWaitTimeP99Micros() {
+        return stats.waitTime.percentileNanos(99) / 1000.0;
+    }
+
+    @Override
+    public double getWaitTimeMaxMicros() {
+        return stats.waitTime.maxNanos() / 1000.0;
+    }
+
+    @Override
+    public double getRunTimeMeanMicros() {
+        return stats.runTime.meanNanos() / 1000.0;
+    }
+
+    @Override
+    public double getRunTimeP50Micros() {
+        return stats.runTime.percentileNanos(50) / 1000.0;
+    }
+
+    @Override
+    public double getRunTimeP99Micros() {
+        return stats.runTime.percentileNanos(99) / 1000.0;
+    }
+
+    @Override
+    public double getRunTimeMaxMicros() {
+        return stats.runTime.maxNanos() / 1000.0;
+    }
+}
@@ -0,0 +1,33 @@
+package fi.iki.apo.pmap.executor;
+
+public interface ManagedExecutorMXBean {
+    String getName();
+
+    int getQueueDepth();
+
+    int getActiveWorkers();
+
+    int getPoolSize();
+
+    long getSubmittedTasks();
+
+    long getCompletedTasks();
+
+    long getRejectedTasks();
+
+    double getWaitTimeMeanMicros();
+
+    double getWaitTimeP50Micros();
+
+    double getWaitTimeP99Micros();
+
+    double getWaitTimeMaxMicros();
+
+    double getRunTimeMeanMicros();
+
+    double getRunTimeP50Micros();
+
+    double getRunTimeP99Micros();
+
+    double getRunTimeMaxMicros();
+}
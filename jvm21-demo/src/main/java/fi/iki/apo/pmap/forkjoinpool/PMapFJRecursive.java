@@ -0,0 +1,17 @@
+package fi.iki.apo.pmap.forkjoinpool;
+
+import fi.iki.apo.pmap.PMapAlternative;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+public record PMapFJRecursive(int minBlockSize, int surplusQueuedTaskLimit) implements PMapAlternative {
+    @Override
+    public <T, R> List<R> pmap(List<T> list, Function<T, R> f) {
+        final var rArr = new Object[list.size()];
+        ForkJoinPool.commonPool().invoke(new RecursiveMapTask<>(list, rArr, f, 0, rArr.length, minBlockSize, surplusQueuedTaskLimit, null));
+        return Arrays.asList((R[]) rArr);
+    }
+}
@@ -0,0 +1,52 @@
+package fi.iki.apo.pmap.forkjoinpool;
+
+import fi.iki.apo.pmap.block.BlockProcessor;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+// Splits [lowerLimit, upperLimit) in half while the range is larger than minBlockSize and the worker's own queue
+// has few surplus tasks. Right halves are forked for idle workers to steal, the left half is processed in place.
+class RecursiveMapTask<T, R> extends RecursiveAction {
+    private final List<T> list;
+    private final Object[] rArr;
+    private final Function<T, R> f;
+    private final int lowerLimit;
+    private final int upperLimit;
+    private final int minBlockSize;
+    private final int surplusQueuedTaskLimit;
+    private final RecursiveMapTask<T, R> next;
+
+    RecursiveMapTask(List<T> list, Object[] rArr, Function<T, R> f, int lowerLimit, int upperLimit, int minBlockSize, int surplusQueuedTaskLimit, RecursiveMapTask<T, R> next) {
+        this.list = list;
+        this.rArr = rArr;
+        this.f = f;
+        this.lowerLimit = lowerLimit;
+        this.upperLimit = upperLimit;
+        this.minBlockSize = minBlockSize;
+        this.surplusQueuedTaskLimit = surplusQueuedTaskLimit;
+        this.next = next;
+    }
+
+    @Override
+    protected void compute() {
+        int upper = upperLimit;
+        RecursiveMapTask<T, R> forked = null;
+        while (upper - lowerLimit > minBlockSize && getSurplusQueuedTaskCount() <= surplusQueuedTaskLimit) {
+            final int middle = (lowerLimit + upper) >>> 1;
+            forked = new RecursiveMapTask<>(list, rArr, f, middle, upper, minBlockSize, surplusQueuedTaskLimit, forked);
+            forked.fork();
+            upper = middle;
+        }
+        BlockProcessor.mapBlock(list, rArr, lowerLimit, upper - 1, f);
+        while (forked != null) {
+            if (forked.tryUnfork()) {
+                forked.invoke();
+            } else {
+                forked.join();
+            }
+            forked = forked.next;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package fi.iki.apo.pmap.io;
+
+import fi.iki.apo.pmap.PMapAlternative;
+import fi.iki.apo.pmap.executor.LatencyHistogram;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+// VirtualThreadIOMap paced by a token bucket. Every call takes a permit before its virtual thread is started, so the
+// downstream sees at most permitsPerSecond calls per second after the initial burst and at most maxInFlight at a time.
+// Share the TokenBucket between maps that call the same downstream.
+public record RateLimitedIOMap(TokenBucket tokenBucket, int maxInFlight) implements PMapAlternative {
+    public RateLimitedIOMap(double permitsPerSecond, int burst, int maxInFlight) {
+        this(new TokenBucket(permitsPerSecond, burst), maxInFlight);
+    }
+
+    // queueDelay is the time from the start of the pmap call to the start of the item's call
+    public record Report(int calls, Duration elapsed, double callsPerSecond, Duration meanQueueDelay,
+                         Duration p99QueueDelay, Duration maxQueueDelay) {
+    }
+
+    public record Result<R>(List<R> results, Report report) {
+    }
+
+    @Override
+    public <T, R> List<R> pmap(List<T> list, Function<T, R> f) {
+        return pmapWithReport(list, f).results();
+    }
+
+    public <T, R> Result<R> pmapWithReport(List<T> list, Function<T, R> f) {
+        final var queueDelay = new LatencyHistogram();
+        final long start = System.nanoTime();
+        final List<R> results = VirtualThreadIOMap.pmap(list, f, maxInFlight, tokenBucket, queueDelay, start);
+        final long elapsed = System.nanoTime() - start;
+        final int calls = (int) queueDelay.count();
+        final var report = new Report(
+                calls,
+                Duration.ofNanos(elapsed),
+                elapsed > 0 ? calls * 1_000_000_000.0 / elapsed : 0,
+                Duration.ofNanos((long) queueDelay.meanNanos()),
+                Duration.ofNanos(queueDelay.percentileNanos(99)),
+                Duration.ofNanos(queueDelay.maxNanos())
+        );
+        return new Result<>(results, report);
+    }
+}
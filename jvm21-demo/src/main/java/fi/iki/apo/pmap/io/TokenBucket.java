@@ -0,0 +1,49 @@
+package fi.iki.apo.pmap.io;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Lock-free token bucket in the GCRA form: instead of a token count it keeps the time when the bucket would be full
+// again and every reservation moves that time forward by one interval. A burst of permits is available when the bucket
+// has been idle. Waiting threads park, so waiting virtual threads release their carrier.
+public class TokenBucket {
+    private final long intervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrival;
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (!(permitsPerSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("Invalid rate " + permitsPerSecond + "/s burst " + burst);
+        }
+        this.intervalNanos = Math.max((long) (1_000_000_000L / permitsPerSecond), 1);
+        this.burstToleranceNanos = (burst - 1) * intervalNanos;
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+
+    public double getPermitsPerSecond() {
+        return 1_000_000_000.0 / intervalNanos;
+    }
+
+    // Reserves one permit and returns the System.nanoTime() at which it may be used
+    public long reserve() {
+        while (true) {
+            final long now = System.nanoTime();
+            final long current = theoreticalArrival.get();
+            final long arrival = current - now > 0 ? current : now;
+            if (theoreticalArrival.compareAndSet(current, arrival + intervalNanos)) {
+                return arrival - burstToleranceNanos;
+            }
+        }
+    }
+
+    public void acquire() throws InterruptedException {
+        final long usableAt = reserve();
+        long wait;
+        while ((wait = usableAt - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, wait);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+}
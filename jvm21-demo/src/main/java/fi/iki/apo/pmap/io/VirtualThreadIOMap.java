@@ -0,0 +1,74 @@
+package fi.iki.apo.pmap.io;
+
+import fi.iki.apo.pmap.FailFastToken;
+import fi.iki.apo.pmap.PMapAlternative;
+import fi.iki.apo.pmap.executor.LatencyHistogram;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+// pmap for blocking I/O functions. Every item gets its own virtual thread, a semaphore keeps at most maxInFlight of
+// them running so sockets and downstream capacity are not exhausted. The calling thread parks while all permits are
+// in use and no platform thread pool is involved. After a failure no new items are started.
+public record VirtualThreadIOMap(int maxInFlight) implements PMapAlternative {
+    public VirtualThreadIOMap {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive, was " + maxInFlight);
+        }
+    }
+
+    @Override
+    public <T, R> List<R> pmap(List<T> list, Function<T, R> f) {
+        return pmap(list, f, maxInFlight, null, null, 0);
+    }
+
+    // tokenBucket and queueDelay are optional, queueDelay records the time from startNanos to the start of each call
+    static <T, R> List<R> pmap(List<T> list, Function<T, R> f, int maxInFlight, TokenBucket tokenBucket,
+                               LatencyHistogram queueDelay, long startNanos) {
+        final var rArr = new Object[list.size()];
+        final var inFlight = new Semaphore(maxInFlight);
+        final var failFast = new FailFastToken();
+        final var threadBuilder = Thread.ofVirtual().name("pmap-io-", 0);
+        boolean interrupted = false;
+        try {
+            for (int c = 0; c < rArr.length && !failFast.isFailed(); c++) {
+                inFlight.acquire();
+                if (tokenBucket != null) {
+                    try {
+                        tokenBucket.acquire();
+                    } catch (InterruptedException e) {
+                        inFlight.release();
+                        throw e;
+                    }
+                }
+                final int index = c;
+                threadBuilder.start(() -> {
+                    try {
+                        if (!failFast.isFailed()) {
+                            if (queueDelay != null) {
+                                queueDelay.record(System.nanoTime() - startNanos);
+                            }
+                            rArr[index] = f.apply(list.get(index));
+                        }
+                    } catch (Throwable t) {
+                        failFast.fail(index, t);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        // all permits are back only when every started thread has finished, which also publishes their results
+        inFlight.acquireUninterruptibly(maxInFlight);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a free slot or permit");
+        }
+        failFast.throwIfFailed();
+        return Arrays.asList((R[]) rArr);
+    }
+}
@@ -1,5 +1,6 @@
 package fi.iki.apo.pmap.modulo;
 
+import fi.iki.apo.pmap.FailFastToken;
 import fi.iki.apo.pmap.JavaMapAlternatives;
 import fi.iki.apo.pmap.TasksAndArray;
 import fi.iki.apo.pmap.forkjoinpool.ForkJoinProcessTask;
@@ -11,38 +12,55 @@ import java.util.function.Function;
 
 import static fi.iki.apo.pmap.JavaMapAlternatives.getCpuCount;
 import static fi.iki.apo.pmap.MultipleOpsPerThreadMap.executeTasks;
+import static fi.iki.apo.pmap.MultipleOpsPerThreadMap.executeTasksCallerRuns;
 import static fi.iki.apo.pmap.MultipleOpsPerThreadMap.executeTasksInFJP;
 
 public class ModuloProcessor {
     public <T, R> List<R> pmapModuloFixedReused(List<T> list, Function<T, R> f) {
+        final var failFast = new FailFastToken();
         final var tasksAndResultArray = TasksAndArray.createModuloTasks(list.size(), (arr, startIndex, jumpSize) -> (Callable<Boolean>) () -> {
-            mapWithModulo(list, arr, startIndex, jumpSize, f);
+            mapWithModulo(list, arr, startIndex, jumpSize, f, failFast);
             return true;
         });
-        return executeTasks(JavaMapAlternatives.reusedVirtualFixedThreadPool, tasksAndResultArray);
+        return executeTasks(JavaMapAlternatives.reusedVirtualFixedThreadPool, tasksAndResultArray, failFast);
+    }
+
+    public <T, R> List<R> pmapModuloFixedReusedCallerRuns(List<T> list, Function<T, R> f) {
+        final var failFast = new FailFastToken();
+        final var tasksAndResultArray = TasksAndArray.createModuloTasks(list.size(), (arr, startIndex, jumpSize) -> (Callable<Boolean>) () -> {
+            mapWithModulo(list, arr, startIndex, jumpSize, f, failFast);
+            return true;
+        });
+        return executeTasksCallerRuns(JavaMapAlternatives.reusedVirtualFixedThreadPool, getCpuCount(), tasksAndResultArray, failFast);
     }
 
     public  <T, R> List<R> pmapModuloFixed(List<T> list, Function<T, R> f) {
+        final var failFast = new FailFastToken();
         final var tasksAndResultArray = TasksAndArray.createModuloTasks(list.size(), (arr, startIndex, jumpSize) -> (Callable<Boolean>) () -> {
-            mapWithModulo(list, arr, startIndex, jumpSize, f);
+            mapWithModulo(list, arr, startIndex, jumpSize, f, failFast);
             return true;
         });
         try (final var executorService = Executors.newFixedThreadPool(getCpuCount())) {
-            return executeTasks(executorService, tasksAndResultArray);
+            return executeTasks(executorService, tasksAndResultArray, failFast);
         }
     }
 
     public <T, R> List<R> pmapModuloFJ(List<T> list, Function<T, R> f) {
-        final var result = TasksAndArray.createModuloTasks(list.size(), (arr, startIndex, jumpSize) -> new ForkJoinProcessTask(null, () -> mapWithModulo(list, arr, startIndex, jumpSize, f)));
-        return executeTasksInFJP(result);
+        final var failFast = new FailFastToken();
+        final var result = TasksAndArray.createModuloTasks(list.size(), (arr, startIndex, jumpSize) -> new ForkJoinProcessTask(null, () -> mapWithModulo(list, arr, startIndex, jumpSize, f, failFast)));
+        return executeTasksInFJP(result, failFast);
     }
 
-    private static <T, R> void mapWithModulo(List<T> list, Object[] rArr, int startIndex, int jump, Function<T, R> f) {
+    private static <T, R> void mapWithModulo(List<T> list, Object[] rArr, int startIndex, int jump, Function<T, R> f, FailFastToken failFast) {
         int size = list.size();
         int index = startIndex;
-        while (index < size) {
-            rArr[index] = f.apply(list.get(index));
-            index += jump;
+        try {
+            while (index < size && !failFast.isFailed()) {
+                rArr[index] = f.apply(list.get(index));
+                index += jump;
+            }
+        } catch (Throwable t) {
+            failFast.fail(index, t);
         }
     }
 
@@ -0,0 +1,27 @@
+package fi.iki.apo.pmap.modulo;
+
+import fi.iki.apo.pmap.MultipleOpsPerThreadMap;
+import fi.iki.apo.pmap.primitive.PMapPrimitiveAlternative;
+import fi.iki.apo.pmap.primitive.RangeTask;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import static fi.iki.apo.pmap.JavaMapAlternatives.getCpuCount;
+
+public record PMapPrimitiveModulo(ExecutorService executorService) implements PMapPrimitiveAlternative {
+    @Override
+    public void executeRanges(int size, RangeTask rangeTask) {
+        final int cpuCount = getCpuCount();
+        final var tasks = new ArrayList<Callable<Boolean>>(cpuCount);
+        for (int c = 0; c < cpuCount; c++) {
+            final int startIndex = c;
+            tasks.add(() -> {
+                rangeTask.run(startIndex, size - 1, cpuCount);
+                return true;
+            });
+        }
+        MultipleOpsPerThreadMap.executeTasks(executorService, tasks);
+    }
+}
@@ -0,0 +1,52 @@
+package fi.iki.apo.pmap.primitive;
+
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongUnaryOperator;
+
+// Implementations split the index space and run RangeTasks in parallel. Elements are read from and written to
+// primitive arrays directly so the mapping never boxes.
+public interface PMapPrimitiveAlternative {
+    void executeRanges(int size, RangeTask rangeTask);
+
+    default int[] pmapInt(int[] arr, IntUnaryOperator f) {
+        final var rArr = new int[arr.length];
+        executeRanges(arr.length, (firstIndex, lastIndex, step) -> {
+            for (int c = firstIndex; c <= lastIndex; c += step) {
+                rArr[c] = f.applyAsInt(arr[c]);
+            }
+        });
+        return rArr;
+    }
+
+    default double[] pmapIntToDouble(int[] arr, IntToDoubleFunction f) {
+        final var rArr = new double[arr.length];
+        executeRanges(arr.length, (firstIndex, lastIndex, step) -> {
+            for (int c = firstIndex; c <= lastIndex; c += step) {
+                rArr[c] = f.applyAsDouble(arr[c]);
+            }
+        });
+        return rArr;
+    }
+
+    default long[] pmapLong(long[] arr, LongUnaryOperator f) {
+        final var rArr = new long[arr.length];
+        executeRanges(arr.length, (firstIndex, lastIndex, step) -> {
+            for (int c = firstIndex; c <= lastIndex; c += step) {
+                rArr[c] = f.applyAsLong(arr[c]);
+            }
+        });
+        return rArr;
+    }
+
+    default double[] pmapDouble(double[] arr, DoubleUnaryOperator f) {
+        final var rArr = new double[arr.length];
+        executeRanges(arr.length, (firstIndex, lastIndex, step) -> {
+            for (int c = firstIndex; c <= lastIndex; c += step) {
+                rArr[c] = f.applyAsDouble(arr[c]);
+            }
+        });
+        return rArr;
+    }
+}
@@ -0,0 +1,6 @@
+package fi.iki.apo.pmap.primitive;
+
+@FunctionalInterface
+public interface RangeTask {
+    void run(int firstIndex, int lastIndex, int step);
+}
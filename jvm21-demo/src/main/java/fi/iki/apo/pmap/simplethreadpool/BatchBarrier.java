@@ -0,0 +1,51 @@
+package fi.iki.apo.pmap.simplethreadpool;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// Completion barrier for a batch of tasks. Workers count down, the last one unparks the waiting thread so the waiter
+// is woken once per batch instead of once per task. The first failure of the batch is kept and rethrown by await.
+class BatchBarrier {
+    private static final int AWAIT_SPINS = 1000;
+    private final AtomicInteger remaining;
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+    private final Thread waiter;
+
+    BatchBarrier(int taskCount) {
+        remaining = new AtomicInteger(taskCount);
+        waiter = Thread.currentThread();
+    }
+
+    <V> Runnable task(Callable<V> callable) {
+        return () -> {
+            try {
+                callable.call();
+            } catch (Throwable t) {
+                firstFailure.compareAndSet(null, t);
+            } finally {
+                if (remaining.decrementAndGet() == 0) {
+                    LockSupport.unpark(waiter);
+                }
+            }
+        };
+    }
+
+    void await() throws InterruptedException, ExecutionException {
+        for (int c = 0; c < AWAIT_SPINS && remaining.get() > 0; c++) {
+            Thread.onSpinWait();
+        }
+        while (remaining.get() > 0) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        final var failure = firstFailure.get();
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+    }
+}
@@ -19,22 +19,21 @@ public class SimpleFuture<V> implements Runnable {
 
     @Override
     public void run() {
+        Object r;
         try {
             V v = callable.call();
-            if (v == null) {
-                result = new AltResult(true, false, null);
-            }
-            result = v;
-            lock.lockInterruptibly();
-            try {
-                finished.signalAll();
-            } finally {
-                lock.unlock();
-            }
+            r = v != null ? v : new AltResult(true, false, null);
         } catch (InterruptedException e) {
-            new AltResult(false, true, e);
+            r = new AltResult(false, true, e);
         } catch (Exception e) {
-            new AltResult(false, false, e);
+            r = new AltResult(false, false, e);
+        }
+        lock.lock();
+        try {
+            result = r;
+            finished.signalAll();
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -48,12 +47,12 @@ public class SimpleFuture<V> implements Runnable {
             } finally {
                 lock.unlock();
             }
-            if (result instanceof AltResult altResult) {
-                if (altResult.isNull) {
-                    return null;
-                } else {
-                    throw new ExecutionException(altResult.throwable);
-                }
+        }
+        if (result instanceof AltResult altResult) {
+            if (altResult.isNull) {
+                return null;
+            } else {
+                throw new ExecutionException(altResult.throwable);
             }
         }
         return (V) result;
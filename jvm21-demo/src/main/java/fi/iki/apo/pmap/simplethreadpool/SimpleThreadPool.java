@@ -1,31 +1,71 @@
 package fi.iki.apo.pmap.simplethreadpool;
 
+import fi.iki.apo.pmap.executor.ExecutorStats;
+
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
-public class SimpleThreadPool {
-    private final WorkerThread[] threads;
+// Elastic pool. corePoolSize workers are started up front and kept, more are started on submit when no worker is idle,
+// up to parallelism (initially maximumPoolSize). Idle workers spin for a while, then park and exit after idleTimeout if
+// there are more than corePoolSize of them.
+public class SimpleThreadPool implements Executor {
+    private static final int IDLE_SPINS = 200;
+    private static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofSeconds(60);
+    private final Slot[] slots;
     private final BlockingQueue<Runnable> taskQueue;
+    private final boolean workStealing;
+    private final ExecutorStats stats;
+    private final int corePoolSize;
+    private final long idleTimeoutNanos;
+    private volatile int parallelism;
+    private volatile boolean running = true;
+    private final AtomicInteger liveWorkers = new AtomicInteger();
+    private final AtomicInteger idleWorkers = new AtomicInteger();
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private final CountDownLatch terminated = new CountDownLatch(1);
 
     public SimpleThreadPool(int poolSize) {
-        taskQueue = new LinkedBlockingQueue<>();
-        threads = new WorkerThread[poolSize];
-        for (int i = 0; i < poolSize; i++) {
-            threads[i] = new WorkerThread();
-            threads[i].start();
+        this(poolSize, false);
+    }
+
+    // workStealing: every worker has its own deque, tasks submitted from outside the pool are pushed round-robin and
+    // tasks submitted by a worker go to its own deque. Workers with an empty deque steal from a random other worker.
+    public SimpleThreadPool(int poolSize, boolean workStealing) {
+        this(poolSize, poolSize, DEFAULT_IDLE_TIMEOUT, workStealing);
+    }
+
+    public SimpleThreadPool(int corePoolSize, int maximumPoolSize, Duration idleTimeout, boolean workStealing) {
+        this(corePoolSize, maximumPoolSize, idleTimeout, workStealing, null);
+    }
+
+    public SimpleThreadPool(int corePoolSize, int maximumPoolSize, Duration idleTimeout, boolean workStealing, ExecutorStats stats) {
+        if (corePoolSize < 0 || maximumPoolSize < 1 || corePoolSize > maximumPoolSize) {
+            throw new IllegalArgumentException("Invalid pool size core " + corePoolSize + " max " + maximumPoolSize);
+        }
+        this.workStealing = workStealing;
+        this.stats = stats;
+        this.corePoolSize = corePoolSize;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.parallelism = maximumPoolSize;
+        taskQueue = workStealing ? null : new LinkedBlockingQueue<>();
+        slots = new Slot[maximumPoolSize];
+        for (int i = 0; i < maximumPoolSize; i++) {
+            slots[i] = new Slot(workStealing ? new ConcurrentLinkedDeque<>() : null);
+        }
+        for (int i = 0; i < corePoolSize; i++) {
+            tryStartWorker();
         }
     }
 
     public <V> SimpleFuture<V> submitTask(Callable<V> task) {
-        try {
-            final var workerTask = new SimpleFuture<>(task);
-            taskQueue.put(workerTask);
-            return workerTask;
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException(e);
-        }
+        final var workerTask = new SimpleFuture<>(task);
+        enqueue(workerTask);
+        return workerTask;
     }
 
     public <V> List<SimpleFuture<V>> submitCallables(List<Callable<V>> tasks) throws ExecutionException, InterruptedException {
@@ -38,16 +78,316 @@ public class SimpleThreadPool {
         }
         return futures;
     }
+
+    @Override
+    public void execute(Runnable command) {
+        enqueue(command);
+    }
+
+    // Runs all tasks and waits for them with one shared barrier. Throws the first failure after all tasks have finished.
+    public <V> void invokeBatch(List<Callable<V>> tasks) throws ExecutionException, InterruptedException {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        final var barrier = new BatchBarrier(tasks.size());
+        for (final var task : tasks) {
+            enqueue(barrier.task(task));
+        }
+        barrier.await();
+    }
+
+    // Limits the number of workers to 1..maximumPoolSize. Extra workers exit when they run out of tasks.
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1 || parallelism > slots.length) {
+            throw new IllegalArgumentException("Parallelism must be between 1 and " + slots.length + ", was " + parallelism);
+        }
+        final int previous = this.parallelism;
+        this.parallelism = parallelism;
+        if (parallelism < previous) {
+            unparkAll();
+        } else if (hasQueuedTasks()) {
+            tryStartWorker();
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getPoolSize() {
+        return liveWorkers.get();
+    }
+
+    public int getActiveCount() {
+        return Math.max(liveWorkers.get() - idleWorkers.get(), 0);
+    }
+
+    public int getQueueSize() {
+        if (!workStealing) {
+            return taskQueue.size();
+        }
+        int size = 0;
+        for (final var slot : slots) {
+            size += slot.deque.size();
+        }
+        return size;
+    }
+
+    // Already submitted tasks are still run, new submits are rejected.
+    public synchronized void shutdown() {
+        running = false;
+        if (liveWorkers.get() == 0) {
+            terminated.countDown();
+        }
+        unparkAll();
+    }
+
+    public boolean isShutdown() {
+        return !running;
+    }
+
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    private void enqueue(Runnable command) {
+        if (!running) {
+            throw rejected();
+        }
+        final var task = stats != null ? stats.wrap(command) : command;
+        final Slot target = workStealing ? push(task) : offer(task);
+        // shutdown may have happened after the check above and the workers may already have left
+        if (!running && (workStealing ? target.deque.removeLastOccurrence(task) : taskQueue.remove(task))) {
+            throw rejected();
+        }
+        signalWorkers(target != null ? target.worker : null);
+    }
+
+    private RejectedExecutionException rejected() {
+        if (stats != null) {
+            stats.rejected();
+        }
+        return new RejectedExecutionException("SimpleThreadPool has been shut down");
+    }
+
+    private Slot offer(Runnable task) {
+        try {
+            taskQueue.put(task);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Slot push(Runnable task) {
+        if (Thread.currentThread() instanceof WorkerThread worker && worker.pool() == this) {
+            worker.slot.deque.addFirst(task);
+            return worker.slot;
+        }
+        final var target = slots[Math.floorMod(nextWorker.getAndIncrement(), parallelism)];
+        target.deque.addLast(task);
+        return target;
+    }
+
+    // idle workers are counted before they check the queues, so either a worker sees the task or it is seen as idle here
+    private void signalWorkers(WorkerThread preferred) {
+        if (idleWorkers.get() > 0 && wakeParkedWorker(preferred)) {
+            return;
+        }
+        if (liveWorkers.get() < parallelism) {
+            tryStartWorker();
+        }
+    }
+
+    // The waker clears parked, so a burst of submits wakes a different worker for every task. If no parked worker is
+    // left, the idle ones are spinning or already woken and a new worker is started when there is room for one.
+    private boolean wakeParkedWorker(WorkerThread preferred) {
+        if (preferred != null && preferred.parked.compareAndSet(true, false)) {
+            LockSupport.unpark(preferred);
+            return true;
+        }
+        for (final var slot : slots) {
+            final var worker = slot.worker;
+            if (worker != null && worker.parked.compareAndSet(true, false)) {
+                LockSupport.unpark(worker);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void unparkAll() {
+        for (final var slot : slots) {
+            final var worker = slot.worker;
+            if (worker != null) {
+                LockSupport.unpark(worker);
+            }
+        }
+    }
+
+    private synchronized void tryStartWorker() {
+        if (!running || liveWorkers.get() >= parallelism) {
+            return;
+        }
+        for (final var slot : slots) {
+            if (slot.worker == null) {
+                final var worker = new WorkerThread(slot);
+                slot.worker = worker;
+                liveWorkers.incrementAndGet();
+                worker.start();
+                return;
+            }
+        }
+    }
+
+    private synchronized boolean removeWorker(WorkerThread worker, int keep) {
+        if (liveWorkers.get() <= keep) {
+            return false;
+        }
+        worker.slot.worker = null;
+        if (liveWorkers.decrementAndGet() == 0 && !running) {
+            terminated.countDown();
+        }
+        return true;
+    }
+
+    private boolean hasQueuedTasks() {
+        if (!workStealing) {
+            return !taskQueue.isEmpty();
+        }
+        for (final var slot : slots) {
+            if (!slot.deque.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Slot {
+        final ConcurrentLinkedDeque<Runnable> deque;
+        volatile WorkerThread worker;
+
+        Slot(ConcurrentLinkedDeque<Runnable> deque) {
+            this.deque = deque;
+        }
+    }
+
     private class WorkerThread extends Thread {
+        final Slot slot;
+        final AtomicBoolean parked = new AtomicBoolean();
+        private boolean idle = false;
+
+        WorkerThread(Slot slot) {
+            this.slot = slot;
+        }
+
+        SimpleThreadPool pool() {
+            return SimpleThreadPool.this;
+        }
+
         @Override
         public void run() {
-            while (true) {
-                try {
-                    Runnable task = taskQueue.take();
-                    task.run();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+            boolean removed = false;
+            int idleSpins = 0;
+            try {
+                while (true) {
+                    final var task = nextTask();
+                    if (task != null) {
+                        setIdle(false);
+                        idleSpins = 0;
+                        // an interrupt left by the previous task must not leak into this one
+                        Thread.interrupted();
+                        try {
+                            task.run();
+                        } finally {
+                            if (stats != null) {
+                                stats.completed();
+                            }
+                        }
+                        continue;
+                    }
+                    setIdle(true);
+                    if (!running && !hasQueuedTasks()) {
+                        return;
+                    } else if (liveWorkers.get() > parallelism && removeWorker(this, parallelism)) {
+                        removed = true;
+                        return;
+                    } else if (idleSpins < IDLE_SPINS) {
+                        idleSpins++;
+                        Thread.onSpinWait();
+                    } else {
+                        idleSpins = 0;
+                        final int keep = Math.min(corePoolSize, parallelism);
+                        if (!parkUntilSignalled() && liveWorkers.get() > keep && removeWorker(this, keep)) {
+                            removed = true;
+                            return;
+                        }
+                    }
+                }
+            } finally {
+                setIdle(false);
+                if (!removed) {
+                    removeWorker(this, 0);
+                }
+                // a task pushed while this worker was leaving must not be left without a worker
+                if (running && hasQueuedTasks()) {
+                    tryStartWorker();
+                }
+            }
+        }
+
+        private void setIdle(boolean idle) {
+            if (this.idle != idle) {
+                this.idle = idle;
+                if (idle) {
+                    idleWorkers.incrementAndGet();
+                } else {
+                    idleWorkers.decrementAndGet();
+                }
+            }
+        }
+
+        private Runnable nextTask() {
+            if (!workStealing) {
+                return taskQueue.poll();
+            }
+            final var own = slot.deque.pollFirst();
+            if (own != null) {
+                return own;
+            }
+            final int start = ThreadLocalRandom.current().nextInt(slots.length);
+            for (int c = 0; c < slots.length; c++) {
+                final var victim = slots[(start + c) % slots.length];
+                if (victim != slot) {
+                    final var stolen = victim.deque.pollLast();
+                    if (stolen != null) {
+                        return stolen;
+                    }
+                }
+            }
+            return null;
+        }
+
+        // parked is published before the queues are checked again, so a submit either sees parked or is seen here.
+        // The interrupt status is cleared first, parkNanos() would return at once on an interrupted thread.
+        // Returns false if the worker stayed idle for the whole idle timeout.
+        private boolean parkUntilSignalled() {
+            Thread.interrupted();
+            parked.set(true);
+            try {
+                if (!running || hasQueuedTasks()) {
+                    return true;
                 }
+                final long start = System.nanoTime();
+                LockSupport.parkNanos(this, idleTimeoutNanos);
+                return System.nanoTime() - start < idleTimeoutNanos;
+            } finally {
+                parked.set(false);
             }
         }
     }
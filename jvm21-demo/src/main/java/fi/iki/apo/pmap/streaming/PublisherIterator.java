@@ -0,0 +1,96 @@
+package fi.iki.apo.pmap.streaming;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// Blocking Iterator view of a Flow.Publisher. Keeps at most bufferSize items requested but not yet consumed.
+class PublisherIterator<T> implements Iterator<T>, Flow.Subscriber<T> {
+    private static final Object COMPLETE = new Object();
+    private static final Object WOKEN = new Object();
+
+    private record Failure(Throwable throwable) {
+    }
+
+    private final BlockingQueue<Object> buffer = new LinkedBlockingQueue<>();
+    private final int bufferSize;
+    private final int requestBatch;
+    private volatile Flow.Subscription subscription;
+    private int consumed = 0;
+    private Object next = null;
+
+    PublisherIterator(int bufferSize) {
+        this.bufferSize = Math.max(bufferSize, 1);
+        this.requestBatch = Math.max(this.bufferSize / 2, 1);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(bufferSize);
+    }
+
+    @Override
+    public void onNext(T item) {
+        buffer.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        buffer.add(new Failure(throwable));
+    }
+
+    @Override
+    public void onComplete() {
+        buffer.add(COMPLETE);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = buffer.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        if (next instanceof Failure failure) {
+            throw new RuntimeException("Source publisher failed", failure.throwable);
+        }
+        return next != COMPLETE && next != WOKEN;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final var item = (T) next;
+        next = null;
+        if (++consumed == requestBatch) {
+            consumed = 0;
+            subscription.request(requestBatch);
+        }
+        return item;
+    }
+
+    // true if hasNext() would not block
+    boolean isReady() {
+        return next != null || !buffer.isEmpty();
+    }
+
+    // Makes a blocked hasNext() return false, used when the consumer has been cancelled
+    void wake() {
+        buffer.add(WOKEN);
+    }
+
+    void cancel() {
+        final var s = subscription;
+        if (s != null) {
+            s.cancel();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package fi.iki.apo.pmap.streaming;
+
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+
+// pmap for inputs that don't fit in memory. Items are read in chunkSize chunks, at most maxChunksInFlight chunks
+// are mapped at the same time and results are emitted in source order as the subscriber requests them.
+public record StreamingPMap(
+        ExecutorService executorService,
+        int chunkSize,
+        int maxChunksInFlight
+) {
+    public <T, R> void pmap(Iterator<T> source, Function<T, R> f, Flow.Subscriber<? super R> subscriber) {
+        start(new StreamingSubscription<>(source, f, subscriber, this));
+    }
+
+    public <T, R> Flow.Publisher<R> pmap(Flow.Publisher<T> source, Function<T, R> f) {
+        return subscriber -> {
+            final var sourceIterator = new PublisherIterator<T>(chunkSize * maxChunksInFlight);
+            source.subscribe(sourceIterator);
+            start(new StreamingSubscription<>(sourceIterator, f, subscriber, this));
+        };
+    }
+
+    private static void start(StreamingSubscription<?, ?> subscription) {
+        final var thread = Thread.ofVirtual().name("streaming-pmap").unstarted(subscription);
+        subscription.driver = thread;
+        thread.start();
+    }
+}
@@ -0,0 +1,128 @@
+package fi.iki.apo.pmap.streaming;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+// Runs in its own virtual thread: keeps the window of mapped chunks full, waits for the head chunk and parks until
+// the subscriber has requested more items.
+class StreamingSubscription<T, R> implements Flow.Subscription, Runnable {
+    private final Iterator<T> source;
+    private final Function<T, R> f;
+    private final Flow.Subscriber<? super R> subscriber;
+    private final StreamingPMap config;
+    private final PublisherIterator<T> publisherSource;
+    private final ArrayDeque<Future<Object[]>> inFlight = new ArrayDeque<>();
+    private final AtomicLong demand = new AtomicLong();
+    private volatile boolean cancelled = false;
+    private volatile IllegalArgumentException requestError = null;
+    volatile Thread driver;
+
+    StreamingSubscription(Iterator<T> source, Function<T, R> f, Flow.Subscriber<? super R> subscriber, StreamingPMap config) {
+        this.source = source;
+        this.f = f;
+        this.subscriber = subscriber;
+        this.config = config;
+        this.publisherSource = source instanceof PublisherIterator<T> publisherIterator ? publisherIterator : null;
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            requestError = new IllegalArgumentException("request must be positive, was " + n);
+        } else {
+            demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+        }
+        LockSupport.unpark(driver);
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        // the driver may be blocked waiting for the upstream publisher
+        if (publisherSource != null) {
+            publisherSource.wake();
+        }
+        LockSupport.unpark(driver);
+    }
+
+    @Override
+    public void run() {
+        try {
+            subscriber.onSubscribe(this);
+            while (!cancelled) {
+                fillWindow();
+                if (cancelled) {
+                    return;
+                }
+                final var head = inFlight.poll();
+                if (head == null) {
+                    subscriber.onComplete();
+                    return;
+                }
+                for (Object r : head.get()) {
+                    if (!awaitDemand()) {
+                        break;
+                    }
+                    subscriber.onNext((R) r);
+                }
+            }
+        } catch (Throwable t) {
+            if (!cancelled) {
+                cancelled = true;
+                subscriber.onError(t instanceof ExecutionException && t.getCause() != null ? t.getCause() : t);
+            }
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+            inFlight.clear();
+            if (cancelled && publisherSource != null) {
+                publisherSource.cancel();
+            }
+        }
+    }
+
+    // Reading from a publisher blocks when it has nothing buffered. That only happens when no chunk is in flight, with
+    // chunks in flight a partly read chunk is submitted and the driver goes on to emit the head chunk instead.
+    private void fillWindow() {
+        final int chunkSize = config.chunkSize();
+        while (inFlight.size() < config.maxChunksInFlight() && !cancelled
+                && (inFlight.isEmpty() || sourceReady()) && source.hasNext()) {
+            final var chunk = new Object[chunkSize];
+            int count = 0;
+            do {
+                chunk[count++] = source.next();
+            } while (count < chunkSize && sourceReady() && source.hasNext());
+            final var filled = count == chunkSize ? chunk : Arrays.copyOf(chunk, count);
+            inFlight.add(config.executorService().submit(() -> {
+                for (int c = 0; c < filled.length; c++) {
+                    filled[c] = f.apply((T) filled[c]);
+                }
+                return filled;
+            }));
+        }
+    }
+
+    private boolean sourceReady() {
+        return publisherSource == null || publisherSource.isReady();
+    }
+
+    private boolean awaitDemand() {
+        while (demand.get() == 0 && !cancelled && requestError == null) {
+            LockSupport.park(this);
+        }
+        if (requestError != null) {
+            throw requestError;
+        }
+        if (cancelled) {
+            return false;
+        }
+        demand.decrementAndGet();
+        return true;
+    }
+}
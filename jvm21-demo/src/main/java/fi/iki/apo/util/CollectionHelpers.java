@@ -9,13 +9,7 @@ import java.util.function.Function;
 public class CollectionHelpers {
     public static <I, K> Map<K, List<I>> groupBy(List<I> list, Function<I, K> keyFn) {
         final var map = new HashMap<K, List<I>>();
-        list.forEach(i -> {
-            var key = keyFn.apply(i);
-            if (!map.containsKey(key)) {
-                map.put(key, new ArrayList<>());
-            }
-            map.get(key).add(i);
-        });
+        list.forEach(i -> map.computeIfAbsent(keyFn.apply(i), key -> new ArrayList<>()).add(i));
         return map;
     }
 
@@ -24,10 +18,16 @@ public class CollectionHelpers {
     }
 
     public static class SplitResult<I> {
-        public final List<I> good = new ArrayList<>();
-        public final List<I> bad = new ArrayList<>();
+        public final List<I> good;
+        public final List<I> bad;
+
+        public SplitResult(List<I> good, List<I> bad) {
+            this.good = good;
+            this.bad = bad;
+        }
 
         public SplitResult(List<I> list, Function<I, Boolean> splitFn) {
+            this(new ArrayList<>(), new ArrayList<>());
             list.forEach(i -> {
                 if (splitFn.apply(i)) {
                     good.add(i);
@@ -17,6 +17,7 @@ public class PerfTest<TestData> {
     private final List<RunnableFn> testRoundFns = new ArrayList<>();
     private Integer currentTestRound;
     private int loggingIntervalSeconds = 15;
+    private VirtualThreadDiagnostics diagnostics;
 
     private final Function<Integer, TestData> testDataBuilder;
     private final int testDataSize;
@@ -84,6 +85,12 @@ public class PerfTest<TestData> {
         return this;
     }
 
+    // every test run is measured as its own strategy, the summary is printed after the results
+    public PerfTest<TestData> withDiagnostics(VirtualThreadDiagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+        return this;
+    }
+
     public <R> PerfTest<TestData> addWarmup(String name, Function<TestData, R> fn) {
         warmupFns.add(new RunnableFn<>(name, fn, new ArrayList<>()));
         return this;
@@ -109,7 +116,7 @@ public class PerfTest<TestData> {
 
     private <T,R> void runFn(RunnableFn<T,R> fn, T testData, int sleepBetweenMs) {
         Benchmark bm = new Benchmark();
-        R result = fn.fn().apply(testData);
+        R result = diagnostics != null ? diagnostics.measure(fn.name(), () -> fn.fn().apply(testData)) : fn.fn().apply(testData);
         fn.runResults.add(new RunResult<>(bm.calculateDuration(), result));
         gcAndSleep(sleepBetweenMs);
     }
@@ -143,6 +150,11 @@ public class PerfTest<TestData> {
         System.out.println("----------------------");
         bmRoot.print("Ready. Showing results");
         createRunSummary(runnableFns, repeats).printResults();
+        if (diagnostics != null) {
+            System.out.println("----------------------");
+            bmRoot.print("Virtual thread diagnostics");
+            diagnostics.printSummary();
+        }
     }
 
     private void runTestRoundsWithLogging(int repeats, int sleepBetweenMs, Benchmark bmRoot) {
@@ -0,0 +1,182 @@
+package fi.iki.apo.util;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+import static fi.iki.apo.util.StringHelpers.formatDuration;
+
+// Records virtual thread pinning, failed virtual thread submits and carrier thread CPU load with an in-process JFR
+// stream. Work is wrapped with measure() or begin()/end() and the events are attributed to the strategy whose
+// time window they fall in.
+public class VirtualThreadDiagnostics implements AutoCloseable {
+    public static final String NO_STRATEGY = "(no strategy)";
+    private static final String PINNED = "jdk.VirtualThreadPinned";
+    private static final String SUBMIT_FAILED = "jdk.VirtualThreadSubmitFailed";
+    private static final String THREAD_CPU_LOAD = "jdk.ThreadCPULoad";
+    private static final String CARRIER_THREAD_GROUP = "CarrierThreads";
+
+    private final RecordingStream stream;
+    private final ConcurrentLinkedQueue<Sample> samples = new ConcurrentLinkedQueue<>();
+    private final List<Window> windows = new ArrayList<>();
+    private String currentStrategy;
+    private Instant currentStart;
+    private boolean stopped = false;
+
+    record Sample(String type, Instant start, Duration duration, String thread, double cpuLoad) {
+    }
+
+    record Window(String strategy, Instant start, Instant end) {
+    }
+
+    public record StrategySummary(
+            String strategy,
+            int pinnedCount,
+            Duration pinnedTotal,
+            Duration pinnedMax,
+            int submitFailedCount,
+            int carrierThreads,
+            double carrierCpuLoad
+    ) {
+    }
+
+    private VirtualThreadDiagnostics(Duration pinnedThreshold, Duration cpuLoadPeriod) {
+        stream = new RecordingStream();
+        stream.enable(PINNED).withThreshold(pinnedThreshold).withStackTrace();
+        stream.enable(SUBMIT_FAILED);
+        stream.enable(THREAD_CPU_LOAD).withPeriod(cpuLoadPeriod);
+        stream.onEvent(PINNED, e -> samples.add(new Sample(PINNED, e.getStartTime(), e.getDuration(), threadName(e), 0)));
+        stream.onEvent(SUBMIT_FAILED, e -> samples.add(new Sample(SUBMIT_FAILED, e.getStartTime(), e.getDuration(), threadName(e), 0)));
+        stream.onEvent(THREAD_CPU_LOAD, e -> {
+            final var thread = e.getThread("eventThread");
+            if (thread != null && thread.getThreadGroup() != null && CARRIER_THREAD_GROUP.equals(thread.getThreadGroup().getName())) {
+                samples.add(new Sample(THREAD_CPU_LOAD, e.getStartTime(), Duration.ZERO, thread.getJavaName(), e.getFloat("user") + e.getFloat("system")));
+            }
+        });
+        stream.startAsync();
+    }
+
+    public static VirtualThreadDiagnostics start() {
+        return start(Duration.ofMillis(1), Duration.ofMillis(100));
+    }
+
+    public static VirtualThreadDiagnostics start(Duration pinnedThreshold, Duration cpuLoadPeriod) {
+        return new VirtualThreadDiagnostics(pinnedThreshold, cpuLoadPeriod);
+    }
+
+    public <R> R measure(String strategy, Supplier<R> fn) {
+        begin(strategy);
+        try {
+            return fn.get();
+        } finally {
+            end();
+        }
+    }
+
+    public synchronized void begin(String strategy) {
+        if (currentStrategy != null) {
+            end();
+        }
+        currentStrategy = strategy;
+        currentStart = Instant.now();
+    }
+
+    public synchronized void end() {
+        if (currentStrategy != null) {
+            windows.add(new Window(currentStrategy, currentStart, Instant.now()));
+            currentStrategy = null;
+        }
+    }
+
+    // Stops the recording, waits for the recorded events to be delivered and summarizes them per strategy in the
+    // order the strategies were first measured
+    public synchronized List<StrategySummary> summarize() {
+        end();
+        if (!stopped) {
+            stream.stop();
+            stopped = true;
+        }
+        final var byStrategy = new LinkedHashMap<String, List<Sample>>();
+        for (final var window : windows) {
+            byStrategy.computeIfAbsent(window.strategy(), k -> new ArrayList<>());
+        }
+        for (final var sample : samples) {
+            byStrategy.computeIfAbsent(resolveStrategy(sample.start()), k -> new ArrayList<>()).add(sample);
+        }
+        final var summaries = new ArrayList<StrategySummary>(byStrategy.size());
+        byStrategy.forEach((strategy, strategySamples) -> summaries.add(summarize(strategy, strategySamples)));
+        return summaries;
+    }
+
+    public void printSummary() {
+        for (final var summary : summarize()) {
+            System.out.println(StringHelpers.joinStrings(
+                    summary.strategy(),
+                    "pinned:", summary.pinnedCount(),
+                    "total", formatDuration(summary.pinnedTotal().toMillis()),
+                    "max", formatDuration(summary.pinnedMax().toMillis()),
+                    "submit failed:", summary.submitFailedCount(),
+                    "carriers:", summary.carrierThreads(),
+                    "carrier cpu load", String.format("%.1f%%", summary.carrierCpuLoad() * 100)
+            ));
+        }
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+
+    private String resolveStrategy(Instant time) {
+        for (final var window : windows) {
+            if (!time.isBefore(window.start()) && !time.isAfter(window.end())) {
+                return window.strategy();
+            }
+        }
+        return NO_STRATEGY;
+    }
+
+    // carrierCpuLoad is the sum of the average loads of the carrier threads, as a fraction of the whole machine
+    private static StrategySummary summarize(String strategy, List<Sample> samples) {
+        int pinnedCount = 0;
+        var pinnedTotal = Duration.ZERO;
+        var pinnedMax = Duration.ZERO;
+        int submitFailedCount = 0;
+        final var carrierLoads = new HashMap<String, double[]>();
+        for (final var sample : samples) {
+            switch (sample.type()) {
+                case PINNED -> {
+                    pinnedCount++;
+                    pinnedTotal = pinnedTotal.plus(sample.duration());
+                    if (sample.duration().compareTo(pinnedMax) > 0) {
+                        pinnedMax = sample.duration();
+                    }
+                }
+                case SUBMIT_FAILED -> submitFailedCount++;
+                case THREAD_CPU_LOAD -> {
+                    final var sumAndCount = carrierLoads.computeIfAbsent(sample.thread(), k -> new double[2]);
+                    sumAndCount[0] += sample.cpuLoad();
+                    sumAndCount[1]++;
+                }
+            }
+        }
+        double carrierCpuLoad = 0;
+        for (final var sumAndCount : carrierLoads.values()) {
+            carrierCpuLoad += sumAndCount[0] / sumAndCount[1];
+        }
+        return new StrategySummary(strategy, pinnedCount, pinnedTotal, pinnedMax, submitFailedCount, carrierLoads.size(), carrierCpuLoad);
+    }
+
+    private static String threadName(RecordedEvent e) {
+        final var thread = e.getThread("eventThread");
+        return thread != null ? thread.getJavaName() : null;
+    }
+}
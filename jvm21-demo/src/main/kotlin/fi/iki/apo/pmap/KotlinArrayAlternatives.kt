@@ -0,0 +1,76 @@
+package fi.iki.apo.pmap
+
+import fi.iki.apo.pmap.block.BlockRangeFactory
+import fi.iki.apo.pmap.primitive.PMapPrimitiveAlternative
+import fi.iki.apo.pmap.primitive.RangeTask
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+
+// Runs the block ranges as coroutines, one coroutine per block
+class CoroutineRangeExecutor(
+    private val blockRangeFactory: BlockRangeFactory = BlockRangeFactory(2000, null),
+    private val dispatcher: CoroutineDispatcher = Dispatchers.Default
+) : PMapPrimitiveAlternative {
+    override fun executeRanges(size: Int, rangeTask: RangeTask) {
+        val blockRanges = blockRangeFactory.resolveBlockRanges<Any>(size)
+        runBlocking(dispatcher) {
+            for (blockRange in blockRanges) {
+                launch {
+                    rangeTask.run(blockRange.min(), blockRange.max(), 1)
+                }
+            }
+        }
+    }
+}
+
+val coroutineRangeExecutor = CoroutineRangeExecutor()
+
+// f is inlined into the loop of the RangeTask, so the elements are read and written without boxing.
+// The Java block engines, e.g. MultipleOpsPerThreadMap.blockSize2000.primitiveCommonFJPool, can be given as executor.
+// Passing a function reference or a variable as f still boxes, a lambda literal is needed for the inlining.
+inline fun IntArray.pmap(
+    executor: PMapPrimitiveAlternative = coroutineRangeExecutor,
+    crossinline f: (Int) -> Int
+): IntArray {
+    val result = IntArray(size)
+    executor.executeRanges(size) { firstIndex, lastIndex, step ->
+        var c = firstIndex
+        while (c <= lastIndex) {
+            result[c] = f(this[c])
+            c += step
+        }
+    }
+    return result
+}
+
+inline fun LongArray.pmap(
+    executor: PMapPrimitiveAlternative = coroutineRangeExecutor,
+    crossinline f: (Long) -> Long
+): LongArray {
+    val result = LongArray(size)
+    executor.executeRanges(size) { firstIndex, lastIndex, step ->
+        var c = firstIndex
+        while (c <= lastIndex) {
+            result[c] = f(this[c])
+            c += step
+        }
+    }
+    return result
+}
+
+inline fun DoubleArray.pmap(
+    executor: PMapPrimitiveAlternative = coroutineRangeExecutor,
+    crossinline f: (Double) -> Double
+): DoubleArray {
+    val result = DoubleArray(size)
+    executor.executeRanges(size) { firstIndex, lastIndex, step ->
+        var c = firstIndex
+        while (c <= lastIndex) {
+            result[c] = f(this[c])
+            c += step
+        }
+    }
+    return result
+}
@@ -0,0 +1,63 @@
+package fi.iki.apo.pmap
+
+import kotlinx.coroutines.*
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.sync.Semaphore
+
+// Runs f for up to concurrency batches at a time on dispatcher and emits the results in source order.
+// bufferSize is the number of mapped batches that may wait for the collector on top of the running ones, so at most
+// concurrency + bufferSize batches are read ahead of the collector and a slow collector stops the upstream.
+// Cheap f should use a batchSize of hundreds or more, so that one coroutine maps many items.
+// A batch is started when it is full or the upstream completes, so slow sources should keep batchSize at 1.
+// Failures and cancellation of the collector cancel the upstream and all running batches.
+fun <T, R> Flow<T>.parallelMapOrdered(
+    concurrency: Int = Runtime.getRuntime().availableProcessors(),
+    bufferSize: Int = concurrency,
+    dispatcher: CoroutineDispatcher = Dispatchers.Default,
+    batchSize: Int = 1,
+    f: suspend (t: T) -> R
+): Flow<R> {
+    require(concurrency > 0) { "concurrency must be positive, was $concurrency" }
+    require(bufferSize >= 0) { "bufferSize must not be negative, was $bufferSize" }
+    require(batchSize > 0) { "batchSize must be positive, was $batchSize" }
+    val upstream = this
+    return flow {
+        coroutineScope {
+            val running = Semaphore(concurrency)
+            // one started batch waits in send() and one is being emitted, the rest wait in the channel
+            val results = Channel<Deferred<List<R>>>(maxOf(concurrency + bufferSize - 2, 0))
+            launch {
+                suspend fun start(batch: List<T>) {
+                    running.acquire()
+                    results.send(async(dispatcher) {
+                        try {
+                            batch.map { f(it) }
+                        } finally {
+                            running.release()
+                        }
+                    })
+                }
+
+                var batch = ArrayList<T>(batchSize)
+                upstream.collect { t ->
+                    batch.add(t)
+                    if (batch.size == batchSize) {
+                        start(batch)
+                        batch = ArrayList(batchSize)
+                    }
+                }
+                if (batch.isNotEmpty()) {
+                    start(batch)
+                }
+                results.close()
+            }
+            for (deferred in results) {
+                for (r in deferred.await()) {
+                    emit(r)
+                }
+            }
+        }
+    }
+}
@@ -29,5 +29,7 @@ object KotlinLoadGenerator {
     }
 
     fun listOfInts(size: Int) = List(size) { i -> i }
+
+    fun arrayOfInts(size: Int) = IntArray(size) { i -> i }
 }
 
@@ -1,5 +1,6 @@
 package fi.iki.apo.pmap
 
+import fi.iki.apo.pmap.block.BlockRangeFactory
 import kotlinx.coroutines.*
 import kotlinx.coroutines.sync.Semaphore
 import kotlinx.coroutines.sync.withPermit
@@ -61,6 +62,27 @@ fun <T, R> Iterable<T>.pmapCoroutinesThreadPool(transformation: (T) -> R): List<
     }
 }
 
+// one coroutine per block range instead of one per item, results are written straight into a preallocated array
+fun <T, R> List<T>.pmapChunked(
+    blockRangeFactory: BlockRangeFactory = BlockRangeFactory(2000, null),
+    dispatcher: CoroutineDispatcher = Dispatchers.Default,
+    f: (t: T) -> R
+): List<R> {
+    val results = arrayOfNulls<Any>(size)
+    val blockRanges = blockRangeFactory.resolveBlockRanges<Any>(size)
+    runBlocking(dispatcher) {
+        for (blockRange in blockRanges) {
+            launch {
+                for (c in blockRange.min()..blockRange.max()) {
+                    results[c] = f(get(c))
+                }
+            }
+        }
+    }
+    @Suppress("UNCHECKED_CAST")
+    return results.asList() as List<R>
+}
+
 fun <T, R> List<T>.pmapNewVirtualThread(f: (t: T) -> R): List<R> {
     val tasks = map { t -> Callable { f(t) } }
     val futures = Executors.newVirtualThreadPerTaskExecutor().use { executorService ->
@@ -93,3 +115,21 @@ fun <T, R> List<T>.pmapJavaStreamParallelMap(f: (t: T) -> R): List<R> {
     return this.parallelStream().map(f).toList()
 }
 
+// Runs every dispatched block on its own virtual thread, so blocking calls inside coroutines park a virtual thread
+// instead of tying up a Dispatchers.IO thread. Use Dispatchers.Loom.limitedParallelism(n) to cap the concurrency.
+private val loomDispatcher = Executors.newVirtualThreadPerTaskExecutor().asCoroutineDispatcher()
+
+val Dispatchers.Loom: CoroutineDispatcher
+    get() = loomDispatcher
+
+// pmap for blocking I/O functions, at most parallelism calls run at a time
+@OptIn(ExperimentalCoroutinesApi::class)
+fun <T, R> List<T>.pmapIO(
+    parallelism: Int = 256,
+    dispatcher: CoroutineDispatcher = Dispatchers.Loom.limitedParallelism(parallelism),
+    f: (t: T) -> R
+): List<R> = runBlocking {
+    this@pmapIO
+        .map { async(dispatcher) { f(it) } }
+        .awaitAll()
+}
@@ -1,14 +1,51 @@
 package fi.iki.apo.pmap;
 
+import fi.iki.apo.pmap.auto.AutoPMap;
+import fi.iki.apo.pmap.auto.AutoPMapStrategy;
+import fi.iki.apo.pmap.auto.CalibrationProfile;
 import fi.iki.apo.pmap.block.BlockRange;
 import fi.iki.apo.pmap.block.BlockRangeFactory;
+import fi.iki.apo.pmap.executor.ExecutorRegistry;
+import fi.iki.apo.pmap.executor.ManagedExecutor;
+import fi.iki.apo.pmap.forkjoinpool.PMapFJRecursive;
+import fi.iki.apo.pmap.io.RateLimitedIOMap;
+import fi.iki.apo.pmap.io.TokenBucket;
+import fi.iki.apo.pmap.modulo.BlockCyclicProcessor;
+import fi.iki.apo.pmap.simplethreadpool.SimpleThreadPool;
+import fi.iki.apo.util.CollectionHelpers;
+import fi.iki.apo.util.Utils;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static fi.iki.apo.pmap.LoadGenerator.listOf;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class PMapTest {
     @Test
@@ -26,9 +63,477 @@ public class PMapTest {
             assertEquals(expected, MultipleOpsPerThreadMap.blockSize2000.reusedFixedThreadPool.pmap(list, integerStringFunction));
             assertEquals(expected, MultipleOpsPerThreadMap.blockSize2000.reusedVirtualFixedThreadPool.pmap(list, integerStringFunction));
             assertEquals(expected, MultipleOpsPerThreadMap.blockSize2000.reusedSimpleThreadPool.pmap(list, integerStringFunction));
+            assertEquals(expected, MultipleOpsPerThreadMap.blockSize250.reusedWorkStealingSimpleThreadPool.pmap(list, integerStringFunction));
+            assertEquals(expected, MultipleOpsPerThreadMap.blockSize250.callerRunsReusedFixedThreadPool.pmap(list, integerStringFunction));
+            assertEquals(expected, MultipleOpsPerThreadMap.blockSize250.callerRunsReusedSimpleThreadPool.pmap(list, integerStringFunction));
+            assertEquals(expected, MultipleOpsPerThreadMap.modulo.pmapModuloFixedReusedCallerRuns(list, integerStringFunction));
+            assertEquals(expected, MultipleOpsPerThreadMap.recursiveFJ250.pmap(list, integerStringFunction));
+            assertEquals(expected, MultipleOpsPerThreadMap.blockSize250.pooledCommonFJPool.pmap(list, integerStringFunction));
+            assertEquals(expected, MultipleOpsPerThreadMap.blockCyclic16.pmapBlockCyclicFixedReused(list, integerStringFunction));
+            assertEquals(expected, MultipleOpsPerThreadMap.blockCyclic64.pmapBlockCyclicFJ(list, integerStringFunction));
+            assertEquals(expected, new BlockCyclicProcessor(3).pmapBlockCyclicFJ(list, integerStringFunction));
+            assertEquals(expected, new PMapFJRecursive(1, 0).pmap(list, integerStringFunction));
         }
     }
 
+    @Test
+    public void primitivePmap() {
+        final var alternatives = List.of(
+                MultipleOpsPerThreadMap.blockCountCpu.primitiveReusedFixedThreadPool,
+                MultipleOpsPerThreadMap.blockSize2000.primitiveReusedFixedThreadPool,
+                MultipleOpsPerThreadMap.blockSize2000.primitiveCommonFJPool,
+                MultipleOpsPerThreadMap.primitiveModuloFixedReused,
+                MultipleOpsPerThreadMap.primitiveModuloFJ);
+        for (int c = 0; c < 5000; c += 7) {
+            final var ints = LoadGenerator.intArrayOf(c);
+            final var longs = Arrays.stream(ints).asLongStream().toArray();
+            final var doubles = Arrays.stream(ints).asDoubleStream().toArray();
+            for (var alternative : alternatives) {
+                assertArrayEquals(Arrays.stream(ints).map(LoadGenerator::powSqrt).toArray(), alternative.pmapInt(ints, LoadGenerator::powSqrt));
+                assertArrayEquals(Arrays.stream(ints).mapToDouble(i -> i * 0.5).toArray(), alternative.pmapIntToDouble(ints, i -> i * 0.5));
+                assertArrayEquals(Arrays.stream(longs).map(l -> l * 3).toArray(), alternative.pmapLong(longs, l -> l * 3));
+                assertArrayEquals(Arrays.stream(doubles).map(Math::sqrt).toArray(), alternative.pmapDouble(doubles, Math::sqrt));
+            }
+        }
+    }
+
+    @Test
+    public void autoPMap() throws IOException {
+        final var profile = new CalibrationProfile(4, List.of(
+                new CalibrationProfile.Entry(1000, 10, AutoPMapStrategy.SEQUENTIAL, Map.of()),
+                new CalibrationProfile.Entry(1000000, 10, AutoPMapStrategy.BLOCK, Map.of()),
+                new CalibrationProfile.Entry(1000, 100000, AutoPMapStrategy.MODULO, Map.of(AutoPMapStrategy.MODULO, 5L))
+        ));
+        final var autoPMap = new AutoPMap(profile, 8);
+        assertEquals(AutoPMapStrategy.SEQUENTIAL, autoPMap.resolveStrategy(500, 5));
+        assertEquals(AutoPMapStrategy.BLOCK, autoPMap.resolveStrategy(2000000, 20));
+        assertEquals(AutoPMapStrategy.MODULO, autoPMap.resolveStrategy(2000, 50000));
+        assertEquals(AutoPMapStrategy.PARALLEL_STREAM, new AutoPMap(CalibrationProfile.empty(), 8).resolveStrategy(2000, 50000));
+
+        final var path = Files.createTempFile("pmap-calibration", ".json");
+        try {
+            profile.save(path);
+            assertEquals(profile, CalibrationProfile.load(path));
+        } finally {
+            Files.delete(path);
+        }
+
+        for (int c = 0; c < 3000; c += 11) {
+            var list = listOf(c, integer -> integer);
+            assertEquals(JavaApiMap.mapFor(list, i -> "a" + i), autoPMap.pmap(list, i -> "a" + i));
+        }
+    }
+
+    @Test
+    public void spliteratorPmap() {
+        final var processor = MultipleOpsPerThreadMap.blockSize250.spliteratorReusedFixedThreadPool;
+        for (int c = 0; c < 3000; c += 13) {
+            var list = listOf(c, integer -> integer);
+            Function<Integer, String> integerStringFunction = i -> "a" + i;
+            var expected = JavaApiMap.mapFor(list, integerStringFunction);
+            final int size = c;
+            assertEquals(expected, processor.pmap(new LinkedList<>(list), integerStringFunction));
+            assertEquals(expected, processor.pmap((Iterable<Integer>) new ArrayDeque<>(list), integerStringFunction));
+            assertEquals(expected, processor.pmap(list.stream(), integerStringFunction));
+            assertEquals(expected, processor.pmap(Stream.iterate(0, i -> i < size, i -> i + 1), integerStringFunction));
+            assertEquals(expected, MultipleOpsPerThreadMap.blockCountCpu.spliteratorCommonFJPool.pmap(Stream.iterate(0, i -> i < size, i -> i + 1), integerStringFunction));
+        }
+    }
+
+    @Test
+    public void pmapIntoReusesPlans() {
+        final var processor = MultipleOpsPerThreadMap.blockSize250.pooledCommonFJPool;
+        final var dest = new String[1000];
+        for (int round = 0; round < 3; round++) {
+            for (int c = 0; c < 1000; c += 37) {
+                var list = listOf(c, integer -> integer);
+                var expected = JavaApiMap.mapFor(list, i -> "a" + i);
+                processor.pmapInto(list, i -> "a" + i, dest);
+                assertEquals(expected, Arrays.asList(dest).subList(0, c));
+            }
+        }
+        // nested calls with the same list size get a plan of their own
+        final var list = listOf(600, integer -> integer);
+        final var nested = processor.pmap(list, i -> processor.pmap(list, n -> n + i).get(599));
+        assertEquals(JavaApiMap.mapFor(list, i -> 599 + i), nested);
+        assertThrows(IllegalArgumentException.class, () -> processor.pmapInto(list, i -> i, new Integer[10]));
+    }
+
+    @Test
+    public void pmapIntoAfterFailure() {
+        final var processor = MultipleOpsPerThreadMap.blockSize250.pooledCommonFJPool;
+        final var list = listOf(2000, integer -> integer);
+        final var expected = JavaApiMap.mapFor(list, i -> i + 1);
+        for (int round = 0; round < 20; round++) {
+            // the first block fails after the others have been stolen, stolen blocks run on after the call returns
+            assertThrows(RuntimeException.class, () -> processor.pmap(list, i -> {
+                if (i == 0) {
+                    Utils.sleep(Duration.ofMillis(2));
+                    throw new RuntimeException("fail");
+                }
+                if (i % 250 == 0) {
+                    Utils.sleep(Duration.ofMillis(5));
+                }
+                return i;
+            }));
+            // the next call on the same size must not reuse block tasks that are still running
+            assertEquals(expected, processor.pmap(list, i -> {
+                if (i == 0) {
+                    Utils.sleep(Duration.ofMillis(10));
+                }
+                return i + 1;
+            }));
+        }
+    }
+
+    @Test
+    public void fusedPipeline() {
+        final var processor = MultipleOpsPerThreadMap.blockSize250.reusedFixedThreadPool;
+        for (int c = 0; c < 3000; c += 17) {
+            var list = listOf(c, integer -> integer);
+            assertEquals(
+                    list.stream().map(i -> i * 3).filter(i -> i % 2 == 0).mapToLong(i -> i).sum(),
+                    processor.pipeline(list).map(i -> i * 3).filter(i -> i % 2 == 0).mapToLong(i -> i).sum());
+            assertEquals(
+                    list.stream().filter(i -> i % 3 == 0).flatMap(i -> Stream.of(i, -i)).map(i -> "a" + i).toList(),
+                    processor.pipeline(list).filter(i -> i % 3 == 0).flatMap(i -> List.of(i, -i)).map(i -> "a" + i).toList());
+            assertEquals(
+                    list.stream().map(i -> "" + i).reduce("", (a, b) -> a.length() > b.length() ? a : b),
+                    processor.pipeline(list).map(i -> "" + i).reduce("", (a, b) -> a.length() > b.length() ? a : b));
+            assertEquals(list.stream().filter(i -> i % 7 == 0).count(), processor.pipeline(list).filter(i -> i % 7 == 0).count());
+            assertEquals(
+                    list.stream().mapToLong(i -> i).map(l -> l * l).filter(l -> l % 5 == 1).max().orElse(-1),
+                    processor.pipeline(list).mapToLong(i -> i).map(l -> l * l).filter(l -> l % 5 == 1).reduce(-1, Math::max));
+        }
+    }
+
+    @Test
+    public void parallelGrouping() {
+        for (var processor : List.of(MultipleOpsPerThreadMap.blockSize250.reusedFixedThreadPool, MultipleOpsPerThreadMap.blockCountCpu.reusedFixedThreadPool)) {
+            for (int c = 0; c < 3000; c += 23) {
+                var list = listOf(c, integer -> integer);
+                Function<Integer, Integer> keyFn = i -> i % 13;
+                assertEquals(CollectionHelpers.groupBy(list, keyFn), processor.groupBy(list, keyFn));
+                assertEquals(CollectionHelpers.groupBy(list, keyFn), processor.groupByStriped(list, keyFn, 4));
+                assertEquals(CollectionHelpers.groupBy(list, i -> i / 2), processor.groupByStriped(list, i -> i / 2, 7));
+                Function<Integer, Integer> nullableKeyFn = i -> i % 5 == 0 ? null : i % 7;
+                assertEquals(CollectionHelpers.groupBy(list, nullableKeyFn), processor.groupBy(list, nullableKeyFn));
+                assertEquals(CollectionHelpers.groupBy(list, nullableKeyFn), processor.groupByStriped(list, nullableKeyFn, 4));
+                final var expectedSplit = CollectionHelpers.split(list, i -> i % 3 == 0);
+                final var split = processor.partition(list, i -> i % 3 == 0);
+                assertEquals(expectedSplit.good, split.good);
+                assertEquals(expectedSplit.bad, split.bad);
+                final var expectedCounts = new HashMap<Integer, Long>();
+                CollectionHelpers.groupBy(list, keyFn).forEach((key, items) -> expectedCounts.put(key, (long) items.size()));
+                assertEquals(expectedCounts, processor.countBy(list, keyFn));
+            }
+        }
+    }
+
+    @Test
+    public void parallelGroupingRunsBlocksInParallel() {
+        final var processor = MultipleOpsPerThreadMap.blockSize250.reusedFixedThreadPoolDoubleThreads;
+        // 40 ranges is fewer than the block size, 400 ranges is more
+        for (int size : List.of(10_000, 100_000)) {
+            final var list = listOf(size, i -> i);
+            final List<Consumer<Function<Integer, Integer>>> operations = List.of(
+                    keyFn -> processor.groupBy(list, keyFn),
+                    keyFn -> processor.groupByStriped(list, keyFn, 4),
+                    keyFn -> processor.partition(list, i -> keyFn.apply(i) == 0),
+                    keyFn -> processor.countBy(list, keyFn)
+            );
+            for (var operation : operations) {
+                final var threads = ConcurrentHashMap.<String>newKeySet();
+                operation.accept(threadRecordingKeyFn(threads));
+                assertTrue(threads.size() > 1, threads.toString());
+            }
+        }
+    }
+
+    @Test
+    public void pipelineRunsBlocksInParallel() {
+        final var processor = MultipleOpsPerThreadMap.blockSize250.reusedFixedThreadPoolDoubleThreads;
+        final var list = listOf(10_000, i -> i);
+        final var listThreads = ConcurrentHashMap.<String>newKeySet();
+        assertEquals(10_000, processor.pipeline(list).map(threadRecordingKeyFn(listThreads)).toList().size());
+        assertTrue(listThreads.size() > 1, listThreads.toString());
+        final var longThreads = ConcurrentHashMap.<String>newKeySet();
+        final var keyFn = threadRecordingKeyFn(longThreads);
+        assertEquals(10_000, processor.pipeline(list).mapToLong(i -> keyFn.apply(i) >= 0 ? 1 : 0).sum());
+        assertTrue(longThreads.size() > 1, longThreads.toString());
+    }
+
+    // sleeps at the start of every 250 item block, so one worker can't run all the blocks before the others start
+    private static Function<Integer, Integer> threadRecordingKeyFn(Set<String> threads) {
+        return i -> {
+            threads.add(Thread.currentThread().getName());
+            if (i % 250 == 0) {
+                Utils.sleep(Duration.ofMillis(2));
+            }
+            return i % 13;
+        };
+    }
+
+    @Test
+    public void failFast() {
+        final List<PMapAlternative> alternatives = List.of(
+                MultipleOpsPerThreadMap.blockSize2000.reusedFixedThreadPool,
+                MultipleOpsPerThreadMap.blockSize2000.reusedVirtualFixedThreadPool,
+                MultipleOpsPerThreadMap.blockSize2000.commonFJPool,
+                MultipleOpsPerThreadMap.blockSize2000.reusedSimpleThreadPool,
+                MultipleOpsPerThreadMap.blockSize2000.reusedWorkStealingSimpleThreadPool,
+                MultipleOpsPerThreadMap.blockSize2000.callerRunsReusedFixedThreadPool,
+                MultipleOpsPerThreadMap.modulo::pmapModuloFixedReusedCallerRuns,
+                MultipleOpsPerThreadMap.modulo::pmapModuloFixedReused,
+                MultipleOpsPerThreadMap.modulo::pmapModuloFJ,
+                MultipleOpsPerThreadMap.blockCyclic16::pmapBlockCyclicFixedReused);
+        final int size = 200000;
+        final var list = listOf(size, integer -> integer);
+        for (var alternative : alternatives) {
+            final var applied = new AtomicInteger();
+            final var e = assertThrows(PMapException.class, () -> alternative.pmap(list, i -> {
+                applied.incrementAndGet();
+                if (i == 1234) {
+                    throw new IllegalStateException("fail " + i);
+                }
+                return LoadGenerator.looperSlow(20000);
+            }));
+            assertEquals(1234, e.index);
+            assertEquals("fail 1234", e.getCause().getMessage());
+            assertTrue(applied.get() < size / 2, "applied " + applied.get() + " items");
+        }
+    }
+
+    @Test
+    public void deadline() {
+        final var processor = MultipleOpsPerThreadMap.blockSize250.deadlineReusedVirtualFixedThreadPool;
+        final var list = listOf(5000, integer -> integer);
+        assertEquals(JavaApiMap.mapFor(list, i -> i * 2), processor.pmapOrThrow(list, i -> i * 2, Duration.ofMinutes(1)));
+
+        final Function<Integer, Integer> slow = i -> {
+            Utils.sleep(Duration.ofMillis(1));
+            return i * 2;
+        };
+        final long start = System.nanoTime();
+        final var partial = processor.pmapUntil(list, slow, Instant.now().plusMillis(50));
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(2).toNanos());
+        assertFalse(partial.isComplete());
+        for (int c = 0; c < list.size(); c++) {
+            assertEquals(partial.isCompleted(c) ? c * 2 : null, partial.results().get(c));
+        }
+        final var e = assertThrows(PMapTimeoutException.class, () -> processor.pmapOrThrow(list, slow, Duration.ofMillis(20)));
+        assertTrue(e.completed.cardinality() < list.size());
+    }
+
+    @Test
+    public void pmapAll() {
+        final Function<Integer, String> f = i -> "a" + i;
+        final var lists = List.of(listOf(700, i -> i), List.<Integer>of(), listOf(1, i -> i), listOf(2500, i -> i), List.<Integer>of());
+        final var expected = lists.stream().map(list -> JavaApiMap.mapFor(list, f)).toList();
+        assertEquals(expected, MultipleOpsPerThreadMap.blockSize250.reusedFixedThreadPool.pmapAll(lists, f));
+        assertEquals(expected, MultipleOpsPerThreadMap.blockSize2000.commonFJPool.pmapAll(lists, f));
+        assertEquals(expected, MultipleOpsPerThreadMap.blockCountCpu.commonFJPool.pmapAll(lists, f));
+        assertEquals(List.of(), MultipleOpsPerThreadMap.blockSize250.commonFJPool.pmapAll(List.<List<Integer>>of(), f));
+        final var e = assertThrows(PMapException.class, () -> MultipleOpsPerThreadMap.blockSize250.reusedFixedThreadPool.pmapAll(lists, i -> {
+            if (i == 2000) {
+                throw new IllegalStateException("fail");
+            }
+            return i;
+        }));
+        assertEquals(701 + 2000, e.index);
+    }
+
+    @Test
+    public void simpleThreadPoolBatch() throws Exception {
+        for (final var pool : List.of(JavaMapAlternatives.reusedSimpleThreadPool, JavaMapAlternatives.reusedWorkStealingSimpleThreadPool)) {
+            final var counter = new AtomicInteger();
+            pool.invokeBatch(Collections.nCopies(500, (Callable<Integer>) counter::incrementAndGet));
+            assertEquals(500, counter.get());
+            final var e = assertThrows(ExecutionException.class, () -> pool.invokeBatch(List.<Callable<Integer>>of(
+                    counter::incrementAndGet,
+                    () -> {
+                        throw new IllegalStateException("fail");
+                    },
+                    counter::incrementAndGet)));
+            assertEquals(IllegalStateException.class, e.getCause().getClass());
+            assertEquals(502, counter.get());
+            assertThrows(ExecutionException.class, () -> pool.submitTask(() -> {
+                throw new IllegalStateException("fail");
+            }).get());
+            assertEquals(null, pool.submitTask(() -> null).get());
+        }
+    }
+
+    @Test
+    public void elasticSimpleThreadPool() throws Exception {
+        for (final boolean workStealing : List.of(false, true)) {
+            final var pool = new SimpleThreadPool(0, 4, Duration.ofMillis(50), workStealing);
+            assertEquals(0, pool.getPoolSize());
+            final var counter = new AtomicInteger();
+            pool.invokeBatch(Collections.nCopies(200, (Callable<Integer>) counter::incrementAndGet));
+            assertTrue(pool.getPoolSize() > 0);
+            final long idleStart = System.nanoTime();
+            while (pool.getPoolSize() > 0 && System.nanoTime() - idleStart < Duration.ofSeconds(5).toNanos()) {
+                Utils.sleep(Duration.ofMillis(10));
+            }
+            assertEquals(0, pool.getPoolSize());
+            pool.setParallelism(1);
+            pool.invokeBatch(Collections.nCopies(200, (Callable<Integer>) counter::incrementAndGet));
+            assertTrue(pool.getPoolSize() <= 1);
+            assertEquals(400, counter.get());
+            assertThrows(IllegalArgumentException.class, () -> pool.setParallelism(5));
+            final var last = pool.submitTask(counter::incrementAndGet);
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+            assertEquals(401, (int) last.get());
+            assertThrows(RejectedExecutionException.class, () -> pool.submitTask(counter::incrementAndGet));
+        }
+    }
+
+    @Test
+    public void simpleThreadPoolWakesParkedWorkers() throws Exception {
+        for (final boolean workStealing : List.of(false, true)) {
+            final var pool = new SimpleThreadPool(0, 4, Duration.ofSeconds(10), workStealing);
+            final Callable<String> sleeper = () -> {
+                Utils.sleep(Duration.ofMillis(100));
+                return Thread.currentThread().getName();
+            };
+            pool.invokeBatch(Collections.nCopies(4, sleeper));
+            // let the workers spin out and park
+            Utils.sleep(Duration.ofMillis(300));
+            final var threads = ConcurrentHashMap.<String>newKeySet();
+            pool.invokeBatch(Collections.nCopies(4, () -> threads.add(sleeper.call())));
+            assertTrue(threads.size() > 1, threads.toString());
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void simpleThreadPoolClearsInterrupts() throws Exception {
+        for (final boolean workStealing : List.of(false, true)) {
+            final var pool = new SimpleThreadPool(0, 1, Duration.ofMillis(200), workStealing);
+            pool.invokeBatch(List.of(() -> {
+                Thread.currentThread().interrupt();
+                return null;
+            }));
+            assertFalse(pool.submitTask(() -> Thread.currentThread().isInterrupted()).get());
+            pool.execute(() -> Thread.currentThread().interrupt());
+            // an interrupted worker must still park and time out instead of spinning
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (pool.getPoolSize() > 0 && System.nanoTime() < deadline) {
+                Utils.sleep(Duration.ofMillis(20));
+            }
+            assertEquals(0, pool.getPoolSize());
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void executorRegistry() throws Exception {
+        final var registry = new ExecutorRegistry("fi.iki.apo.pmap.test", true);
+        final var executor = registry.fixedThreadPool("fixed", 2, Executors.defaultThreadFactory());
+        final var pool = registry.simpleThreadPool("simple", 0, 2, Duration.ofSeconds(1), true);
+        for (final var future : executor.invokeAll(Collections.nCopies(100, (Callable<Integer>) () -> 1))) {
+            future.get();
+        }
+        pool.invokeBatch(Collections.nCopies(100, (Callable<Integer>) () -> 1));
+        for (final var name : List.of("fixed", "simple")) {
+            final var managed = registry.get(name);
+            assertEquals(100, managed.getSubmittedTasks());
+            // completion is counted after the task has released the caller
+            final long waitStart = System.nanoTime();
+            while (managed.getCompletedTasks() < 100 && System.nanoTime() - waitStart < Duration.ofSeconds(5).toNanos()) {
+                Thread.onSpinWait();
+            }
+            assertEquals(100, managed.getCompletedTasks());
+            assertEquals(100, managed.stats().waitTime.count());
+            assertTrue(managed.getRunTimeMaxMicros() >= managed.getRunTimeP50Micros());
+            final var jmxName = registry.objectName(name);
+            assertEquals(100L, ManagementFactory.getPlatformMBeanServer().getAttribute(jmxName, "SubmittedTasks"));
+            assertEquals(0, ManagementFactory.getPlatformMBeanServer().getAttribute(jmxName, "QueueDepth"));
+        }
+        assertEquals(List.of("fixed", "simple"), registry.executors().stream().map(ManagedExecutor::getName).toList());
+        assertThrows(IllegalArgumentException.class, () -> registry.fixedThreadPool("fixed", 1, Executors.defaultThreadFactory()));
+        registry.shutdownAll();
+        assertThrows(RejectedExecutionException.class, () -> executor.submit(() -> 1));
+        assertThrows(RejectedExecutionException.class, () -> pool.submitTask(() -> 1));
+        assertEquals(1, registry.get("fixed").getRejectedTasks());
+        assertEquals(1, registry.get("simple").getRejectedTasks());
+    }
+
+    @Test
+    public void executorRegistryWithoutTiming() throws Exception {
+        final var registry = new ExecutorRegistry("fi.iki.apo.pmap.test.notiming", false);
+        final var executor = registry.fixedThreadPool("fixed", 2, Executors.defaultThreadFactory());
+        final var pool = registry.simpleThreadPool("simple", 0, 2, Duration.ofSeconds(1), true);
+        for (final var future : executor.invokeAll(Collections.nCopies(100, (Callable<Integer>) () -> 1))) {
+            future.get();
+        }
+        pool.invokeBatch(Collections.nCopies(100, (Callable<Integer>) () -> 1));
+        for (final var name : List.of("fixed", "simple")) {
+            final var managed = registry.get(name);
+            final long waitStart = System.nanoTime();
+            while (managed.getCompletedTasks() < 100 && System.nanoTime() - waitStart < Duration.ofSeconds(5).toNanos()) {
+                Thread.onSpinWait();
+            }
+            assertEquals(100, managed.getSubmittedTasks());
+            assertEquals(100, managed.getCompletedTasks());
+            assertEquals(0, managed.stats().waitTime.count());
+        }
+        registry.shutdownAll();
+    }
+
+    @Test
+    public void virtualThreadIOMap() {
+        final var list = listOf(500, i -> i);
+        final var running = new AtomicInteger();
+        final var maxRunning = new AtomicInteger();
+        final var result = SingleOpPerThreadMap.pmapNewVirtualThreadLimited(list, i -> {
+            assertTrue(Thread.currentThread().isVirtual());
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Utils.sleep(Duration.ofMillis(1));
+            running.decrementAndGet();
+            return i * 2;
+        }, 20);
+        assertEquals(JavaApiMap.mapFor(list, i -> i * 2), result);
+        assertTrue(maxRunning.get() <= 20);
+
+        final var started = new AtomicInteger();
+        final var e = assertThrows(PMapException.class, () -> SingleOpPerThreadMap.pmapNewVirtualThreadLimited(list, i -> {
+            started.incrementAndGet();
+            if (i == 100) {
+                throw new IllegalStateException("fail");
+            }
+            Utils.sleep(Duration.ofMillis(1));
+            return i;
+        }, 4));
+        assertEquals(100, e.index);
+        assertTrue(started.get() < list.size());
+        assertThrows(IllegalArgumentException.class, () -> SingleOpPerThreadMap.pmapNewVirtualThreadLimited(list, i -> i, 0));
+    }
+
+    @Test
+    public void rateLimitedIOMap() {
+        final var list = listOf(60, i -> i);
+        final var ioMap = new RateLimitedIOMap(200, 10, 4);
+        final var result = ioMap.pmapWithReport(list, i -> i * 2);
+        assertEquals(JavaApiMap.mapFor(list, i -> i * 2), result.results());
+        final var report = result.report();
+        assertEquals(60, report.calls());
+        // the first 10 permits are the burst, the other 50 come at 5ms intervals
+        assertTrue(report.elapsed().toMillis() >= 240, report.toString());
+        assertTrue(report.callsPerSecond() < 250, report.toString());
+        assertTrue(report.maxQueueDelay().compareTo(report.meanQueueDelay()) >= 0);
+
+        final var bucket = new TokenBucket(1, 3);
+        for (int c = 0; c < 3; c++) {
+            assertTrue(bucket.reserve() - System.nanoTime() <= 0);
+        }
+        assertTrue(bucket.reserve() - System.nanoTime() > 900_000_000L);
+    }
+
     @Test
     public void blockRange() {
         assertEquals(Arrays.asList(), BlockRangeFactory.splitByBlockSize(0, 0));
@@ -44,6 +549,9 @@ public class PMapTest {
         for (int c = 0; c < 1000; c++) {
             var list = listOf(c, integer -> integer);
             assertEquals(list.stream().filter(integer -> integer % 2 == 0).toList(), processor.filter(list, integer -> integer % 2 == 0));
+            assertEquals(list.stream().filter(integer -> integer % 2 == 0).toList(), processor.filterScatter(list, integer -> integer % 2 == 0));
+            assertEquals(list.stream().filter(integer -> integer % 97 < 3).toList(), MultipleOpsPerThreadMap.blockSize250.reusedFixedThreadPool.filterScatter(list, integer -> integer % 97 < 3));
+            assertEquals(list, MultipleOpsPerThreadMap.blockCountCpu.reusedFixedThreadPool.filterScatter(list, integer -> true));
             assertEquals(list.stream().reduce(0, (a, b) -> a + b*2), processor.mapReduce(list, integer -> integer * 2, lists -> {
                 int counter = 0;
                 for (var l : lists) {
@@ -2,6 +2,7 @@ package fi.iki.apo.pmap;
 
 import fi.iki.apo.util.CollectionHelpers;
 import fi.iki.apo.util.PerfTest;
+import fi.iki.apo.util.VirtualThreadDiagnostics;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
@@ -33,6 +34,9 @@ public class ParallelMapPerfTest {
 
     private static <T, R> long executePerformanceTests(int repeats, int testItemCount, Function<Integer, List<T>> testDataBuilder, Function<T, R> testF) {
         final var perf = new PerfTest<>(testDataBuilder, testItemCount, testItemCount / 10);
+        if (Boolean.getBoolean("pmap.diagnostics")) {
+            perf.withDiagnostics(VirtualThreadDiagnostics.start());
+        }
 
         perf.addWarmup("testF", list -> {
             final var warmUpResults = new ArrayList<R>(list.size());
@@ -88,7 +92,8 @@ public class ParallelMapPerfTest {
         perf
                 .addTestRun("pmap with Java list.parallelStream()", (l) -> JavaApiMap.pmapParallelStream(l, testF).size())
                 .addTestRun("pmap with Java pmap.blockSize2000.reusedVirtualFixedThreadPool", (l) -> MultipleOpsPerThreadMap.blockSize2000.reusedVirtualFixedThreadPool.pmap(l, testF).size())
-                .addTestRun("pmap with Java pmap.blockSize2000.reusedSimpleThreadPool", (l) -> MultipleOpsPerThreadMap.blockSize2000.reusedSimpleThreadPool.pmap(l, testF).size());
+                .addTestRun("pmap with Java pmap.blockSize2000.reusedSimpleThreadPool", (l) -> MultipleOpsPerThreadMap.blockSize2000.reusedSimpleThreadPool.pmap(l, testF).size())
+                .addTestRun("pmap with Java pmap.blockSize2000.reusedWorkStealingSimpleThreadPool", (l) -> MultipleOpsPerThreadMap.blockSize2000.reusedWorkStealingSimpleThreadPool.pmap(l, testF).size());
 
         perf.runTests(repeats, 1000);
         return perf.testRunCount();
@@ -0,0 +1,147 @@
+package fi.iki.apo.pmap;
+
+import fi.iki.apo.pmap.streaming.StreamingPMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StreamingPMapTest {
+    private static class CollectingSubscriber<R> implements Flow.Subscriber<R> {
+        final List<R> items = new ArrayList<>();
+        final CompletableFuture<List<R>> done = new CompletableFuture<>();
+        private final int requestBatch;
+        Flow.Subscription subscription;
+        private int received = 0;
+
+        CollectingSubscriber(int requestBatch) {
+            this.requestBatch = requestBatch;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(requestBatch);
+        }
+
+        @Override
+        public void onNext(R item) {
+            items.add(item);
+            if (++received == requestBatch) {
+                received = 0;
+                subscription.request(requestBatch);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(items);
+        }
+    }
+
+    @Test
+    public void streamingFromIteratorKeepsOrderAndWindow() throws Exception {
+        final var streaming = new StreamingPMap(JavaMapAlternatives.reusedFixedThreadPool, 100, 4);
+        final int size = 100_000;
+        final var read = new AtomicInteger();
+        final var maxUnemitted = new AtomicInteger();
+        final var subscriber = new CollectingSubscriber<String>(7) {
+            @Override
+            public void onNext(String item) {
+                maxUnemitted.accumulateAndGet(read.get() - items.size(), Math::max);
+                super.onNext(item);
+            }
+        };
+        final Iterator<Integer> source = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return read.get() < size;
+            }
+
+            @Override
+            public Integer next() {
+                return read.getAndIncrement();
+            }
+        };
+        streaming.pmap(source, i -> "a" + i, subscriber);
+        final var results = subscriber.done.get(1, TimeUnit.MINUTES);
+        assertEquals(JavaApiMap.mapFor(LoadGenerator.listOf(size, i -> i), i -> "a" + i), results);
+        assertTrue(maxUnemitted.get() <= 5 * 100, "unemitted items " + maxUnemitted.get());
+    }
+
+    @Test
+    public void streamingFromPublisher() throws Exception {
+        for (int size : new int[]{0, 1, 99, 100, 101, 12345}) {
+            final var subscriber = new CollectingSubscriber<Integer>(1000);
+            try (final var source = new SubmissionPublisher<Integer>()) {
+                MultipleOpsPerThreadMap.streamingReusedVirtualFixedThreadPool.pmap(source, i -> i * 2).subscribe(subscriber);
+                for (int c = 0; c < size; c++) {
+                    source.submit(c);
+                }
+            }
+            assertEquals(JavaApiMap.mapFor(LoadGenerator.listOf(size, i -> i), i -> i * 2), subscriber.done.get(1, TimeUnit.MINUTES));
+        }
+    }
+
+    @Test
+    public void streamingPropagatesFailure() throws Exception {
+        final var subscriber = new CollectingSubscriber<Integer>(10);
+        MultipleOpsPerThreadMap.streamingReusedFixedThreadPool.pmap(LoadGenerator.listOf(10000, i -> i).iterator(), i -> {
+            if (i == 5000) {
+                throw new IllegalStateException("fail " + i);
+            }
+            return i;
+        }, subscriber);
+        try {
+            subscriber.done.get(1, TimeUnit.MINUTES);
+            throw new AssertionError("expected failure");
+        } catch (ExecutionException e) {
+            assertEquals("fail 5000", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void streamingEmitsAndCancelsWhileUpstreamIsSilent() throws Exception {
+        try (final var source = new SubmissionPublisher<Integer>()) {
+            final var received = new CountDownLatch(10);
+            final var subscriber = new CollectingSubscriber<Integer>(1000) {
+                @Override
+                public void onNext(Integer item) {
+                    super.onNext(item);
+                    received.countDown();
+                }
+            };
+            MultipleOpsPerThreadMap.streamingReusedFixedThreadPool.pmap(source, i -> i * 2).subscribe(subscriber);
+            for (int c = 0; c < 10; c++) {
+                source.submit(c);
+            }
+            // far less than one chunk, the mapped items must not wait for more items from the upstream
+            assertTrue(received.await(10, TimeUnit.SECONDS), "received " + subscriber.items.size());
+            assertEquals(JavaApiMap.mapFor(LoadGenerator.listOf(10, i -> i), i -> i * 2), subscriber.items);
+            subscriber.subscription.cancel();
+            final long start = System.nanoTime();
+            while (source.getNumberOfSubscribers() > 0 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10)) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, source.getNumberOfSubscribers());
+            assertFalse(subscriber.done.isDone());
+        }
+    }
+}
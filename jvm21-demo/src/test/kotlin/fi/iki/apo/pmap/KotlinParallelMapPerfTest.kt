@@ -2,6 +2,9 @@ package fi.iki.apo.pmap
 
 import fi.iki.apo.pmap
 import fi.iki.apo.util.PerfTest
+import kotlinx.coroutines.flow.asFlow
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
 import org.junit.jupiter.api.Test
 
 class KotlinParallelMapPerfTest {
@@ -69,6 +72,10 @@ class KotlinParallelMapPerfTest {
             .addTestRun("pmap with Kotlin Coroutines mapAsync") { list -> list.pmapCoroutinesCC(testF).size }
             .addTestRun("pmap with Kotlin Coroutines mapAsync semaphore") { list -> list.pmapCoroutinesCCSemaphore(testF).size }
             .addTestRun("pmap with Kotlin pmapThreadPoolCoroutines") { list -> list.pmapCoroutinesThreadPool(testF).size }
+            .addTestRun("pmap with Kotlin pmapChunked") { list -> list.pmapChunked(f = testF).size }
+            .addTestRun("pmap with Kotlin Flow parallelMapOrdered") { list ->
+                runBlocking { list.asFlow().parallelMapOrdered(batchSize = 1000) { testF(it) }.toList() }.size
+            }
 
         perf.runTests(repeats, 1000)
         return perf.testRunCount()
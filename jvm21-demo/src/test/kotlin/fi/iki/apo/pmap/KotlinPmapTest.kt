@@ -0,0 +1,176 @@
+package fi.iki.apo.pmap
+
+import fi.iki.apo.pmap.block.BlockRangeFactory
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.asFlow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.take
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Test
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.random.Random
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class KotlinPmapTest {
+    private val items = KotlinLoadGenerator.listOfInts(1000)
+
+    @Test
+    fun parallelMapOrderedKeepsSourceOrder() = runBlocking {
+        for (batchSize in listOf(1, 7, 2000)) {
+            val random = Random(batchSize)
+            val delays = List(items.size) { random.nextLong(3) }
+            val results = items.asFlow()
+                .parallelMapOrdered(concurrency = 4, batchSize = batchSize) {
+                    delay(delays[it])
+                    it * 2
+                }
+                .toList()
+            assertEquals(items.map { it * 2 }, results)
+        }
+    }
+
+    @Test
+    fun parallelMapOrderedReachesConcurrency() = runBlocking {
+        for ((concurrency, bufferSize) in listOf(3 to 0, 8 to 1, 4 to 16)) {
+            val running = AtomicInteger()
+            val maxRunning = AtomicInteger()
+            items.take(64).asFlow()
+                .parallelMapOrdered(concurrency = concurrency, bufferSize = bufferSize) {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max)
+                    delay(20)
+                    running.decrementAndGet()
+                    it
+                }
+                .toList()
+            assertEquals(concurrency, maxRunning.get(), "concurrency $concurrency bufferSize $bufferSize")
+        }
+    }
+
+    @Test
+    fun parallelMapOrderedBoundsBuffering() = runBlocking {
+        val concurrency = 2
+        val bufferSize = 3
+        val batchSize = 5
+        val started = AtomicInteger()
+        var emitted = 0
+        items.asFlow()
+            .parallelMapOrdered(concurrency = concurrency, bufferSize = bufferSize, batchSize = batchSize) {
+                started.incrementAndGet()
+                it
+            }
+            .collect {
+                emitted++
+                delay(1)
+                val ahead = started.get() - emitted
+                assertTrue(ahead <= (concurrency + bufferSize) * batchSize, "$ahead items mapped ahead of the collector")
+            }
+        assertEquals(items.size, emitted)
+    }
+
+    @Test
+    fun parallelMapOrderedPropagatesFailure() {
+        val e = assertFailsWith<IllegalStateException> {
+            runBlocking {
+                items.asFlow()
+                    .parallelMapOrdered(concurrency = 4) {
+                        check(it != 500) { "fail $it" }
+                        it
+                    }
+                    .toList()
+            }
+        }
+        assertEquals("fail 500", e.message)
+    }
+
+    @Test
+    fun parallelMapOrderedCancelsUpstream() = runBlocking {
+        val upstreamClosed = AtomicBoolean()
+        val endless = flow {
+            try {
+                var i = 0
+                while (true) {
+                    emit(i++)
+                }
+            } finally {
+                upstreamClosed.set(true)
+            }
+        }
+        val results = endless.parallelMapOrdered(concurrency = 4, batchSize = 3) { it * 2 }.take(10).toList()
+        assertEquals(List(10) { it * 2 }, results)
+        assertTrue(upstreamClosed.get())
+    }
+
+    @Test
+    fun parallelMapOrderedRejectsBadArguments() {
+        assertFailsWith<IllegalArgumentException> { items.asFlow().parallelMapOrdered(concurrency = 0) { it } }
+        assertFailsWith<IllegalArgumentException> { items.asFlow().parallelMapOrdered(bufferSize = -1) { it } }
+        assertFailsWith<IllegalArgumentException> { items.asFlow().parallelMapOrdered(batchSize = 0) { it } }
+    }
+
+    @Test
+    fun primitiveArrayPmap() {
+        val executors = listOf(
+            coroutineRangeExecutor,
+            CoroutineRangeExecutor(BlockRangeFactory(null, 3), Dispatchers.IO),
+            MultipleOpsPerThreadMap.blockSize2000.primitiveCommonFJPool,
+            MultipleOpsPerThreadMap.blockSize2000.primitiveReusedFixedThreadPool
+        )
+        for (size in listOf(0, 1, 1999, 2000, 10001)) {
+            val ints = KotlinLoadGenerator.arrayOfInts(size)
+            val longs = LongArray(size) { it * 1_000_000_000L }
+            val doubles = DoubleArray(size) { it / 3.0 }
+            for (executor in executors) {
+                assertContentEquals(IntArray(size) { ints[it] * 3 + 1 }, ints.pmap(executor) { it * 3 + 1 })
+                assertContentEquals(LongArray(size) { longs[it] + 1 }, longs.pmap(executor) { it + 1 })
+                assertContentEquals(DoubleArray(size) { doubles[it] * 2 }, doubles.pmap(executor) { it * 2 })
+            }
+            assertContentEquals(IntArray(size) { ints[it] - 1 }, ints.pmap { it - 1 })
+        }
+    }
+
+    @Test
+    fun pmapIORunsOnVirtualThreadsWithinParallelism() {
+        runBlocking(Dispatchers.Loom) {
+            assertTrue(Thread.currentThread().isVirtual)
+        }
+        val ioItems = items.take(200)
+        val running = AtomicInteger()
+        val maxRunning = AtomicInteger()
+        val platformThreadCalls = AtomicInteger()
+        val results = ioItems.pmapIO(parallelism = 8) {
+            if (!Thread.currentThread().isVirtual) {
+                platformThreadCalls.incrementAndGet()
+            }
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max)
+            Thread.sleep(5)
+            running.decrementAndGet()
+            it * 2
+        }
+        assertEquals(ioItems.map { it * 2 }, results)
+        assertEquals(0, platformThreadCalls.get())
+        assertTrue(maxRunning.get() in 2..8, "max running ${maxRunning.get()}")
+    }
+
+    @Test
+    fun pmapChunked() {
+        Executors.newFixedThreadPool(3).asCoroutineDispatcher().use { dispatcher ->
+            for (size in listOf(0, 1, 999, 1000, 2501)) {
+                val list = KotlinLoadGenerator.listOfInts(size)
+                val expected = list.map { it * 2 }
+                assertEquals(expected, list.pmapChunked { it * 2 })
+                // 2501 items in blocks of 1000 leaves a partial last block
+                assertEquals(expected, list.pmapChunked(BlockRangeFactory(1000, null)) { it * 2 })
+                assertEquals(expected, list.pmapChunked(BlockRangeFactory(null, 4), dispatcher) { it * 2 })
+                assertEquals(expected, list.pmapChunked(BlockRangeFactory(7, null), dispatcher) { it * 2 })
+            }
+        }
+    }
+}
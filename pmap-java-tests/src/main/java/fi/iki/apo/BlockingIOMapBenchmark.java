@@ -0,0 +1,109 @@
+package fi.iki.apo;
+
+import fi.iki.apo.pmap.SingleOpPerThreadMap;
+import fi.iki.apo.pmap.io.RateLimitedIOMap;
+import fi.iki.apo.pmap.io.VirtualThreadIOMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+// Maps items with a blocking function. "sleep" blocks the virtual thread in Thread.sleep, "http" calls a local sleep
+// endpoint, by default the one in testserver-js (node index.js). Helidon's SleepResource only sleeps whole seconds:
+// -Dpmap.sleepUrl=http://localhost:8080/sleep/1
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@Timeout(time = 5, timeUnit = TimeUnit.MINUTES)
+@Fork(value = 1, warmups = 0, jvmArgsAppend = "-Dpmap.executorTiming=false")
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class BlockingIOMapBenchmark {
+    private static final Duration SLEEP = Duration.ofMillis(50);
+    private static final double PERMITS_PER_SECOND = 5000;
+    private static final int BURST = 100;
+
+    @Param({"sleep", "http"})
+    private String target;
+
+    @Param({"1000"})
+    private int itemCount;
+
+    @Param({"64", "256"})
+    private int maxInFlight;
+
+    private List<Integer> items;
+    private Function<Integer, Integer> blockingCall;
+    private VirtualThreadIOMap ioMap;
+    private RateLimitedIOMap rateLimitedIOMap;
+    private ExecutorService httpExecutor;
+    private HttpClient httpClient;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        items = IntStream.range(0, itemCount).boxed().toList();
+        ioMap = new VirtualThreadIOMap(maxInFlight);
+        rateLimitedIOMap = new RateLimitedIOMap(PERMITS_PER_SECOND, BURST, maxInFlight);
+        if (target.equals("http")) {
+            final var uri = URI.create(System.getProperty("pmap.sleepUrl", "http://localhost:3000/sleep/0.05"));
+            httpExecutor = Executors.newVirtualThreadPerTaskExecutor();
+            httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).executor(httpExecutor).build();
+            blockingCall = i -> httpGet(uri);
+        } else {
+            blockingCall = i -> {
+                try {
+                    Thread.sleep(SLEEP);
+                    return i;
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            };
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (httpClient != null) {
+            httpClient.close();
+            httpExecutor.close();
+        }
+    }
+
+    @Benchmark
+    public List<Integer> virtualThreadIOMap() {
+        return ioMap.pmap(items, blockingCall);
+    }
+
+    // paced to PERMITS_PER_SECOND, so the score can't go below itemCount / PERMITS_PER_SECOND after the burst
+    @Benchmark
+    public List<Integer> rateLimitedIOMap() {
+        return rateLimitedIOMap.pmap(items, blockingCall);
+    }
+
+    @Benchmark
+    public List<Integer> newVirtualThreadUnbounded() {
+        return SingleOpPerThreadMap.pmapNewVirtualThread(items, blockingCall);
+    }
+
+    private int httpGet(URI uri) {
+        try {
+            final var response = httpClient.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new RuntimeException("Unexpected status " + response.statusCode() + " from " + uri);
+            }
+            return response.body().length();
+        } catch (IOException | InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package fi.iki.apo;
+
+import fi.iki.apo.pmap.LoadGenerator;
+import fi.iki.apo.pmap.MultipleOpsPerThreadMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+@Warmup(iterations = 8)
+@Measurement(iterations = 8)
+@BenchmarkMode(Mode.AverageTime)
+@Timeout(time = 5, timeUnit = TimeUnit.MINUTES)
+@Fork(value = 1, warmups = 0, jvmArgsAppend = "-Dpmap.executorTiming=false")
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+    @Param({"1000000", "10000000"})
+    private int itemCount;
+    // percentage of items that pass the filter
+    @Param({"1", "10", "50", "90"})
+    private int selectivity;
+
+    private List<Integer> items;
+    private Predicate<Integer> predicate;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        items = LoadGenerator.listOf(itemCount, i -> i);
+        final int limit = selectivity;
+        // spread the survivors pseudo randomly so that branches are not predictable
+        predicate = i -> ((i * 0x9E3779B9) >>> 1) % 100 < limit;
+    }
+
+    @Benchmark
+    public List<Integer> filterStream() {
+        return items.stream().filter(predicate).toList();
+    }
+
+    @Benchmark
+    public List<Integer> filterParallelStream() {
+        return items.parallelStream().filter(predicate).toList();
+    }
+
+    @Benchmark
+    public List<Integer> filterBlockFixedReused2000() {
+        return MultipleOpsPerThreadMap.blockSize2000.reusedFixedThreadPool.filter(items, predicate::test);
+    }
+
+    @Benchmark
+    public List<Integer> filterScatterBlockFixedReused2000() {
+        return MultipleOpsPerThreadMap.blockSize2000.reusedFixedThreadPool.filterScatter(items, predicate);
+    }
+
+    @Benchmark
+    public List<Integer> filterScatterBlockFixedReusedCpu() {
+        return MultipleOpsPerThreadMap.blockCountCpu.reusedFixedThreadPool.filterScatter(items, predicate);
+    }
+}
@@ -7,16 +7,18 @@ import fi.iki.apo.pmap.LoadGenerator;
 import org.openjdk.jmh.annotations.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
 
 @Warmup(iterations = 16)
 @Measurement(iterations = 16)
 @BenchmarkMode(Mode.AverageTime)
 @Timeout(time = 5, timeUnit = TimeUnit.MINUTES)
-@Fork(value = 1, warmups = 0)
+@Fork(value = 1, warmups = 0, jvmArgsAppend = "-Dpmap.executorTiming=false")
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
 @State(Scope.Benchmark)
 public class JavaPmapBenchmark {
@@ -32,11 +34,18 @@ public class JavaPmapBenchmark {
 
     private List<Integer> millionItems;
     private List<List<Integer>> thousandThousandItems;
+    private int[] millionInts;
+    private int[][] thousandThousandInts;
 
     @Setup(Level.Invocation)
     public void setup() {
         millionItems = LoadGenerator.listOf(1000000, i -> i);
         thousandThousandItems = LoadGenerator.listOf(1000, i -> LoadGenerator.listOf(1000, n -> n));
+        millionInts = LoadGenerator.intArrayOf(1000000);
+        thousandThousandInts = new int[1000][];
+        for (int c = 0; c < thousandThousandInts.length; c++) {
+            thousandThousandInts[c] = LoadGenerator.intArrayOf(1000);
+        }
     }
 
     private Function<Integer, Integer> resolveLoadGenerator() {
@@ -49,6 +58,16 @@ public class JavaPmapBenchmark {
         throw new RuntimeException("Unsupported LoadGenerator type " + loadGeneratorType);
     }
 
+    private IntUnaryOperator resolveIntLoadGenerator() {
+        switch (loadGeneratorType) {
+            case FAST:
+                return LoadGenerator::looperFast;
+            case SLOW:
+                return LoadGenerator::looperSlow;
+        }
+        throw new RuntimeException("Unsupported LoadGenerator type " + loadGeneratorType);
+    }
+
     private List<Integer> runBenchmark(BiFunction<List<Integer>, Function<Integer, Integer>, List<Integer>> f) {
         final var loadGenerator = resolveLoadGenerator();
         switch (itemCount) {
@@ -65,6 +84,41 @@ public class JavaPmapBenchmark {
         throw new RuntimeException("Unsupported ItemCount " + loadGeneratorType);
     }
 
+    private List<Integer> runBatchBenchmark(BiFunction<List<List<Integer>>, Function<Integer, Integer>, List<List<Integer>>> f) {
+        final var loadGenerator = resolveLoadGenerator();
+        switch (itemCount) {
+            case MILLION:
+                return f.apply(List.of(millionItems), loadGenerator).get(0);
+            case THOUSANDTHOUSAND: {
+                final var results = new ArrayList<Integer>();
+                for (final var list : f.apply(thousandThousandItems, loadGenerator)) {
+                    results.addAll(list);
+                }
+                return results;
+            }
+        }
+        throw new RuntimeException("Unsupported ItemCount " + itemCount);
+    }
+
+    private int[] runIntBenchmark(BiFunction<int[], IntUnaryOperator, int[]> f) {
+        final var loadGenerator = resolveIntLoadGenerator();
+        switch (itemCount) {
+            case MILLION:
+                return f.apply(millionInts, loadGenerator);
+            case THOUSANDTHOUSAND: {
+                final var results = new int[thousandThousandInts.length * 1000];
+                int offset = 0;
+                for (final var arr : thousandThousandInts) {
+                    final var mapped = f.apply(arr, loadGenerator);
+                    System.arraycopy(mapped, 0, results, offset, mapped.length);
+                    offset += mapped.length;
+                }
+                return results;
+            }
+        }
+        throw new RuntimeException("Unsupported ItemCount " + itemCount);
+    }
+
     @Benchmark
     public List<Integer> mapFor() {
         return runBenchmark(JavaApiMap::mapFor);
@@ -190,6 +244,11 @@ public class JavaPmapBenchmark {
         return runBenchmark((list, f) -> MultipleOpsPerThreadMap.blockSize2000.reusedFixedThreadPool.pmap(list, f));
     }
 
+    @Benchmark
+    public List<Integer> pmapBlockFixedReusedCallerRuns2000() {
+        return runBenchmark((list, f) -> MultipleOpsPerThreadMap.blockSize2000.callerRunsReusedFixedThreadPool.pmap(list, f));
+    }
+
     @Benchmark
     public List<Integer> pmapBlockFixed2000() {
         return runBenchmark(MultipleOpsPerThreadMap.blockSize2000::pmapBlockFixed);
@@ -200,6 +259,36 @@ public class JavaPmapBenchmark {
         return runBenchmark((list, f) -> MultipleOpsPerThreadMap.blockSize2000.commonFJPool.pmap(list, f));
     }
 
+    @Benchmark
+    public List<Integer> pmapAllBlockFixedReused2000() {
+        return runBatchBenchmark((lists, f) -> MultipleOpsPerThreadMap.blockSize2000.reusedFixedThreadPool.pmapAll(lists, f));
+    }
+
+    @Benchmark
+    public List<Integer> pmapAllBlockFJ2000() {
+        return runBatchBenchmark((lists, f) -> MultipleOpsPerThreadMap.blockSize2000.commonFJPool.pmapAll(lists, f));
+    }
+
+    @Benchmark
+    public List<Integer> pmapBlockPooledFJ2000() {
+        return runBenchmark(MultipleOpsPerThreadMap.blockSize2000.pooledCommonFJPool::pmap);
+    }
+
+    @Benchmark
+    public List<Integer> pmapRecursiveFJ250() {
+        return runBenchmark(MultipleOpsPerThreadMap.recursiveFJ250::pmap);
+    }
+
+    @Benchmark
+    public List<Integer> pmapRecursiveFJ1000() {
+        return runBenchmark(MultipleOpsPerThreadMap.recursiveFJ1000::pmap);
+    }
+
+    @Benchmark
+    public List<Integer> pmapAuto() {
+        return runBenchmark(MultipleOpsPerThreadMap.auto::pmap);
+    }
+
     @Benchmark
     public List<Integer> pmapBlockFixedReusedVT4000() {
         return runBenchmark((list, f) -> MultipleOpsPerThreadMap.blockSize4000.reusedVirtualFixedThreadPool.pmap(list, f));
@@ -240,6 +329,11 @@ public class JavaPmapBenchmark {
         return runBenchmark(MultipleOpsPerThreadMap.modulo::pmapModuloFixedReused);
     }
 
+    @Benchmark
+    public List<Integer> pmapPartitionModuloFixedReusedCallerRuns() {
+        return runBenchmark(MultipleOpsPerThreadMap.modulo::pmapModuloFixedReusedCallerRuns);
+    }
+
     @Benchmark
     public List<Integer> pmapPartitionModuloFixed() {
         return runBenchmark(MultipleOpsPerThreadMap.modulo::pmapModuloFixed);
@@ -249,4 +343,70 @@ public class JavaPmapBenchmark {
     public List<Integer> pmapPartitionModuloFJ() {
         return runBenchmark(MultipleOpsPerThreadMap.modulo::pmapModuloFJ);
     }
+
+    @Benchmark
+    public List<Integer> pmapPartitionBlockCyclic16FixedReused() {
+        return runBenchmark(MultipleOpsPerThreadMap.blockCyclic16::pmapBlockCyclicFixedReused);
+    }
+
+    @Benchmark
+    public List<Integer> pmapPartitionBlockCyclic16FJ() {
+        return runBenchmark(MultipleOpsPerThreadMap.blockCyclic16::pmapBlockCyclicFJ);
+    }
+
+    @Benchmark
+    public List<Integer> pmapPartitionBlockCyclic64FixedReused() {
+        return runBenchmark(MultipleOpsPerThreadMap.blockCyclic64::pmapBlockCyclicFixedReused);
+    }
+
+    @Benchmark
+    public List<Integer> pmapPartitionBlockCyclic64FJ() {
+        return runBenchmark(MultipleOpsPerThreadMap.blockCyclic64::pmapBlockCyclicFJ);
+    }
+
+    @Benchmark
+    public int[] mapIntFor() {
+        return runIntBenchmark((arr, f) -> {
+            final var rArr = new int[arr.length];
+            for (int c = 0; c < arr.length; c++) {
+                rArr[c] = f.applyAsInt(arr[c]);
+            }
+            return rArr;
+        });
+    }
+
+    @Benchmark
+    public int[] pmapIntParallelStream() {
+        return runIntBenchmark((arr, f) -> Arrays.stream(arr).parallel().map(f).toArray());
+    }
+
+    @Benchmark
+    public int[] pmapIntBlockFixedReusedCpu() {
+        return runIntBenchmark(MultipleOpsPerThreadMap.blockCountCpu.primitiveReusedFixedThreadPool::pmapInt);
+    }
+
+    @Benchmark
+    public int[] pmapIntBlockFJCpu() {
+        return runIntBenchmark(MultipleOpsPerThreadMap.blockCountCpu.primitiveCommonFJPool::pmapInt);
+    }
+
+    @Benchmark
+    public int[] pmapIntBlockFixedReused2000() {
+        return runIntBenchmark(MultipleOpsPerThreadMap.blockSize2000.primitiveReusedFixedThreadPool::pmapInt);
+    }
+
+    @Benchmark
+    public int[] pmapIntBlockFJ2000() {
+        return runIntBenchmark(MultipleOpsPerThreadMap.blockSize2000.primitiveCommonFJPool::pmapInt);
+    }
+
+    @Benchmark
+    public int[] pmapIntPartitionModuloFixedReused() {
+        return runIntBenchmark(MultipleOpsPerThreadMap.primitiveModuloFixedReused::pmapInt);
+    }
+
+    @Benchmark
+    public int[] pmapIntPartitionModuloFJ() {
+        return runIntBenchmark(MultipleOpsPerThreadMap.primitiveModuloFJ::pmapInt);
+    }
 }
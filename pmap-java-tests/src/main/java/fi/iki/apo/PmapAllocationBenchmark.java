@@ -0,0 +1,56 @@
+package fi.iki.apo;
+
+import fi.iki.apo.pmap.LoadGenerator;
+import fi.iki.apo.pmap.MultipleOpsPerThreadMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Measures the per-call allocations of the pmap machinery on the THOUSANDTHOUSAND shape. The mapping function
+// returns its cached Integer argument so that the results themselves don't allocate. Run with -prof gc and
+// compare gc.alloc.rate.norm.
+@Warmup(iterations = 8)
+@Measurement(iterations = 8)
+@BenchmarkMode(Mode.AverageTime)
+@Timeout(time = 5, timeUnit = TimeUnit.MINUTES)
+@Fork(value = 1, warmups = 0, jvmArgsAppend = "-Dpmap.executorTiming=false")
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class PmapAllocationBenchmark {
+    private final Function<Integer, Integer> identity = i -> i;
+    private List<Integer> thousandItems;
+    private Integer[] dest;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        thousandItems = LoadGenerator.listOf(1000, i -> i);
+        dest = new Integer[1000];
+    }
+
+    @Benchmark
+    public List<Integer> pmapBlockFJ250() {
+        return MultipleOpsPerThreadMap.blockSize250.commonFJPool.pmap(thousandItems, identity);
+    }
+
+    @Benchmark
+    public List<Integer> pmapBlockFixedReused250() {
+        return MultipleOpsPerThreadMap.blockSize250.reusedFixedThreadPool.pmap(thousandItems, identity);
+    }
+
+    @Benchmark
+    public List<Integer> pmapBlockFixedReusedCallerRuns250() {
+        return MultipleOpsPerThreadMap.blockSize250.callerRunsReusedFixedThreadPool.pmap(thousandItems, identity);
+    }
+
+    @Benchmark
+    public List<Integer> pmapPooledFJ250() {
+        return MultipleOpsPerThreadMap.blockSize250.pooledCommonFJPool.pmap(thousandItems, identity);
+    }
+
+    @Benchmark
+    public Integer[] pmapIntoPooledFJ250() {
+        return MultipleOpsPerThreadMap.blockSize250.pooledCommonFJPool.pmapInto(thousandItems, identity, dest);
+    }
+}
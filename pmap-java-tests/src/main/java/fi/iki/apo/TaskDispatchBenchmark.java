@@ -0,0 +1,85 @@
+package fi.iki.apo;
+
+import fi.iki.apo.pmap.JavaMapAlternatives;
+import fi.iki.apo.pmap.simplethreadpool.SimpleThreadPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Measures how fast the pools dispatch tiny tasks. Every task does almost nothing so the score is dominated by
+// submitting, handing the task over to a worker and waiting for the results.
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@Timeout(time = 5, timeUnit = TimeUnit.MINUTES)
+@Fork(value = 1, warmups = 0, jvmArgsAppend = "-Dpmap.executorTiming=false")
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class TaskDispatchBenchmark {
+    @Param({"100", "10000"})
+    private int taskCount;
+
+    private List<Callable<Integer>> tasks;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        tasks = new ArrayList<>(taskCount);
+        for (int c = 0; c < taskCount; c++) {
+            final int i = c;
+            tasks.add(() -> i);
+        }
+    }
+
+    @Benchmark
+    public int simpleThreadPoolSharedQueue() throws ExecutionException, InterruptedException {
+        return runInSimpleThreadPool(JavaMapAlternatives.reusedSimpleThreadPool);
+    }
+
+    @Benchmark
+    public int simpleThreadPoolWorkStealing() throws ExecutionException, InterruptedException {
+        return runInSimpleThreadPool(JavaMapAlternatives.reusedWorkStealingSimpleThreadPool);
+    }
+
+    @Benchmark
+    public int simpleThreadPoolSharedQueueBatch() throws ExecutionException, InterruptedException {
+        JavaMapAlternatives.reusedSimpleThreadPool.invokeBatch(tasks);
+        return taskCount;
+    }
+
+    @Benchmark
+    public int simpleThreadPoolWorkStealingBatch() throws ExecutionException, InterruptedException {
+        JavaMapAlternatives.reusedWorkStealingSimpleThreadPool.invokeBatch(tasks);
+        return taskCount;
+    }
+
+    @Benchmark
+    public int forkJoinCommonPool() throws ExecutionException, InterruptedException {
+        int sum = 0;
+        for (final var future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+            sum += future.get();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int fixedThreadPool() throws ExecutionException, InterruptedException {
+        int sum = 0;
+        for (final var future : JavaMapAlternatives.reusedFixedThreadPool.invokeAll(tasks)) {
+            sum += future.get();
+        }
+        return sum;
+    }
+
+    private int runInSimpleThreadPool(SimpleThreadPool pool) throws ExecutionException, InterruptedException {
+        int sum = 0;
+        for (final var future : pool.submitCallables(tasks)) {
+            sum += future.get();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,63 @@
+package fi.iki.apo;
+
+import fi.iki.apo.util.VirtualThreadDiagnostics;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// JMH profiler for the virtual thread diagnostics, run with -prof fi.iki.apo.VirtualThreadDiagnosticsProfiler.
+// Every iteration is recorded as one strategy named after the benchmark and its params.
+public class VirtualThreadDiagnosticsProfiler implements InternalProfiler {
+    private VirtualThreadDiagnostics diagnostics;
+
+    @Override
+    public String getDescription() {
+        return "Virtual thread pinning, failed submits and carrier CPU load recorded with JFR";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        diagnostics = VirtualThreadDiagnostics.start();
+        diagnostics.begin(strategyName(benchmarkParams));
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams, IterationResult result) {
+        final List<VirtualThreadDiagnostics.StrategySummary> summaries;
+        try {
+            summaries = diagnostics.summarize();
+        } finally {
+            diagnostics.close();
+            diagnostics = null;
+        }
+        final var strategy = strategyName(benchmarkParams);
+        final var results = new ArrayList<ScalarResult>();
+        for (final var summary : summaries) {
+            if (summary.strategy().equals(strategy)) {
+                results.add(new ScalarResult("vt.pinned.count", summary.pinnedCount(), "events", AggregationPolicy.SUM));
+                results.add(new ScalarResult("vt.pinned.total", summary.pinnedTotal().toNanos() / 1e6, "ms", AggregationPolicy.SUM));
+                results.add(new ScalarResult("vt.pinned.max", summary.pinnedMax().toNanos() / 1e6, "ms", AggregationPolicy.MAX));
+                results.add(new ScalarResult("vt.submitFailed.count", summary.submitFailedCount(), "events", AggregationPolicy.SUM));
+                results.add(new ScalarResult("vt.carriers", summary.carrierThreads(), "threads", AggregationPolicy.MAX));
+                results.add(new ScalarResult("vt.carrierCpuLoad", summary.carrierCpuLoad() * 100, "%", AggregationPolicy.AVG));
+            }
+        }
+        return results;
+    }
+
+    private static String strategyName(BenchmarkParams benchmarkParams) {
+        final var name = new StringBuilder(benchmarkParams.getBenchmark());
+        for (final var key : benchmarkParams.getParamsKeys()) {
+            name.append(' ').append(key).append('=').append(benchmarkParams.getParam(key));
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package fi.iki.apo
+
+import fi.iki.apo.pmap.*
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.FlowPreview
+import kotlinx.coroutines.flow.*
+import kotlinx.coroutines.runBlocking
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+// Maps a Flow of items in parallel and collects the results to a list. The list based pmaps map the same items
+// without a Flow in between. flatMapMerge does not keep the source order.
+@Warmup(iterations = 8)
+@Measurement(iterations = 8)
+@BenchmarkMode(Mode.AverageTime)
+@Timeout(time = 5, timeUnit = TimeUnit.MINUTES)
+@Fork(value = 1, warmups = 0, jvmArgsAppend = ["-Dpmap.executorTiming=false"])
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+open class KotlinFlowBenchmark {
+
+    @Param(FAST, SLOW)
+    open var loadGeneratorType: String? = null
+
+    @Param("100000")
+    open var itemCount: Int = 0
+
+    private var items: List<Int> = listOf()
+
+    @Setup(Level.Trial)
+    fun setup() {
+        items = KotlinLoadGenerator.listOfInts(itemCount)
+    }
+
+    private fun resolveLoadGenerator(): (i: Int) -> Int {
+        return when (loadGeneratorType) {
+            FAST -> KotlinLoadGenerator::looperFast
+            SLOW -> KotlinLoadGenerator::looperSlow
+            else -> throw RuntimeException("Unsupported LoadGenerator type $loadGeneratorType")
+        }
+    }
+
+    companion object {
+        const val FAST = "fast"
+        const val SLOW = "slow"
+        private val cpuCount = Runtime.getRuntime().availableProcessors()
+    }
+
+    private fun collectFlow(mapper: Flow<Int>.((Int) -> Int) -> Flow<Int>): List<Int> {
+        val loadGenerator = resolveLoadGenerator()
+        return runBlocking { items.asFlow().mapper(loadGenerator).toList() }
+    }
+
+    @Benchmark
+    fun flowMap() = collectFlow { f -> map { f(it) } }
+
+    @Benchmark
+    fun flowMapFlowOnDefault() = collectFlow { f -> map { f(it) }.flowOn(Dispatchers.Default) }
+
+    @Benchmark
+    fun flowParallelMapOrdered() = collectFlow { f -> parallelMapOrdered { f(it) } }
+
+    @Benchmark
+    fun flowParallelMapOrderedBatch100() = collectFlow { f -> parallelMapOrdered(batchSize = 100) { f(it) } }
+
+    @Benchmark
+    fun flowParallelMapOrderedBatch2000() = collectFlow { f -> parallelMapOrdered(batchSize = 2000) { f(it) } }
+
+    @OptIn(ExperimentalCoroutinesApi::class, FlowPreview::class)
+    @Benchmark
+    fun flowFlatMapMerge() = collectFlow { f ->
+        flatMapMerge(cpuCount) { i -> flow { emit(f(i)) }.flowOn(Dispatchers.Default) }
+    }
+
+    @Benchmark
+    fun listPmapChunked() = items.pmapChunked(f = resolveLoadGenerator())
+
+    @Benchmark
+    fun listPmapCoroutinesCCSemaphore() = items.pmapCoroutinesCCSemaphore(resolveLoadGenerator())
+
+    @Benchmark
+    fun listJavaBlockFJ2000() = MultipleOpsPerThreadMap.blockSize2000.commonFJPool.pmap(items, resolveLoadGenerator())
+}
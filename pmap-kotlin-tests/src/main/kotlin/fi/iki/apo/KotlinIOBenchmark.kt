@@ -0,0 +1,94 @@
+package fi.iki.apo
+
+import fi.iki.apo.pmap.*
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import org.openjdk.jmh.annotations.*
+import java.net.URI
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.time.Duration
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+// Maps items with a blocking function on the Loom dispatcher and on Dispatchers.IO. "sleep" blocks in Thread.sleep,
+// "http" calls a local sleep endpoint, by default the one in testserver-js (node index.js).
+// Helidon's SleepResource only sleeps whole seconds: -Dpmap.sleepUrl=http://localhost:8080/sleep/1
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@Timeout(time = 5, timeUnit = TimeUnit.MINUTES)
+@Fork(value = 1, warmups = 0, jvmArgsAppend = ["-Dpmap.executorTiming=false"])
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@OptIn(ExperimentalCoroutinesApi::class)
+open class KotlinIOBenchmark {
+
+    @Param(SLEEP, HTTP)
+    open var target: String? = null
+
+    @Param("1000")
+    open var itemCount: Int = 0
+
+    @Param("64", "256")
+    open var parallelism: Int = 0
+
+    private var items: List<Int> = listOf()
+    private var blockingCall: (Int) -> Int = { it }
+    private var httpExecutor: ExecutorService? = null
+    private var httpClient: HttpClient? = null
+
+    companion object {
+        const val SLEEP = "sleep"
+        const val HTTP = "http"
+    }
+
+    @Setup(Level.Trial)
+    fun setup() {
+        items = KotlinLoadGenerator.listOfInts(itemCount)
+        when (target) {
+            SLEEP -> blockingCall = { i ->
+                Thread.sleep(50)
+                i
+            }
+            HTTP -> {
+                val uri = URI.create(System.getProperty("pmap.sleepUrl", "http://localhost:3000/sleep/0.05"))
+                val executor = Executors.newVirtualThreadPerTaskExecutor()
+                val client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).executor(executor).build()
+                httpExecutor = executor
+                httpClient = client
+                blockingCall = { _ -> httpGet(client, uri) }
+            }
+            else -> throw RuntimeException("Unsupported target $target")
+        }
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        httpClient?.close()
+        httpExecutor?.close()
+    }
+
+    private fun httpGet(client: HttpClient, uri: URI): Int {
+        val response = client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString())
+        if (response.statusCode() != 200) {
+            throw RuntimeException("Unexpected status ${response.statusCode()} from $uri")
+        }
+        return response.body().length
+    }
+
+    @Benchmark
+    fun pmapIOLoom() = items.pmapIO(parallelism, f = blockingCall)
+
+    @Benchmark
+    fun pmapIODispatchersIO() = items.pmapIO(dispatcher = Dispatchers.IO.limitedParallelism(parallelism), f = blockingCall)
+
+    // Dispatchers.IO without a view is capped at 64 threads
+    @Benchmark
+    fun pmapIODispatchersIODefault() = items.pmapIO(dispatcher = Dispatchers.IO, f = blockingCall)
+
+    @Benchmark
+    fun pmapNewVirtualThread() = items.pmapNewVirtualThread(blockingCall)
+}
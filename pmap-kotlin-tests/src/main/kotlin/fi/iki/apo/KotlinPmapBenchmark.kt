@@ -1,6 +1,8 @@
 package fi.iki.apo
 
 import fi.iki.apo.pmap.*
+import fi.iki.apo.pmap.block.BlockRangeFactory
+import fi.iki.apo.pmap.primitive.PMapPrimitiveAlternative
 import org.openjdk.jmh.annotations.*
 import java.util.concurrent.TimeUnit
 
@@ -8,7 +10,7 @@ import java.util.concurrent.TimeUnit
 @Measurement(iterations = 16)
 @BenchmarkMode(Mode.AverageTime)
 @Timeout(time = 5, timeUnit = TimeUnit.MINUTES)
-@Fork(value = 1, warmups = 0)
+@Fork(value = 1, warmups = 0, jvmArgsAppend = ["-Dpmap.executorTiming=false"])
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
 @State(Scope.Benchmark)
 open class KotlinPmapBenchmark {
@@ -21,11 +23,16 @@ open class KotlinPmapBenchmark {
 
     private var millionItems: List<Int> = listOf()
     private var thousandThousandItems: List<List<Int>> = listOf()
+    private var millionArray = IntArray(0)
+    private var thousandThousandArrays: List<IntArray> = listOf()
+    private val cpuBlocks = BlockRangeFactory(null, Runtime.getRuntime().availableProcessors())
 
     @Setup(Level.Invocation)
     fun setup() {
         millionItems = KotlinLoadGenerator.listOfInts(1000000)
         thousandThousandItems = List(1000) {KotlinLoadGenerator.listOfInts(1000)}
+        millionArray = KotlinLoadGenerator.arrayOfInts(1000000)
+        thousandThousandArrays = List(1000) {KotlinLoadGenerator.arrayOfInts(1000)}
     }
 
     private fun resolveLoadGenerator(): (i: Int) -> Int {
@@ -58,6 +65,23 @@ open class KotlinPmapBenchmark {
         }
     }
 
+    private fun runArrayBenchmark(f: (IntArray) -> IntArray): List<IntArray> {
+        return when (itemCount) {
+            MILLION -> listOf(f.invoke(millionArray))
+            THOUSANDTHOUSAND -> thousandThousandArrays.map(f)
+            else -> throw RuntimeException("Unsupported ItemCount $itemCount")
+        }
+    }
+
+    // lambda literals so that the load generator is inlined into the pmap loop and nothing gets boxed
+    private fun pmapArray(arr: IntArray, executor: PMapPrimitiveAlternative): IntArray {
+        return when (loadGeneratorType) {
+            FAST -> arr.pmap(executor) { KotlinLoadGenerator.looperFast(it) }
+            SLOW -> arr.pmap(executor) { KotlinLoadGenerator.looperSlow(it) }
+            else -> throw RuntimeException("Unsupported LoadGenerator type $loadGeneratorType")
+        }
+    }
+
     @Benchmark
     fun mapWithoutThreads() = runBenchmark(List<Int>::mapWithoutThreads)
 
@@ -85,9 +109,40 @@ open class KotlinPmapBenchmark {
     @Benchmark
     fun pmapCoroutinesCCSemaphore() = runBenchmark(List<Int>::pmapCoroutinesCCSemaphore)
 
+    @Benchmark
+    fun pmapChunked2000() = runBenchmark { list, f -> list.pmapChunked(f = f) }
+
+    @Benchmark
+    fun pmapChunkedCpu() = runBenchmark { list, f -> list.pmapChunked(cpuBlocks, f = f) }
+
     @Benchmark
     fun pmapCoroutinesThreadPool() = runBenchmark(List<Int>::pmapCoroutinesThreadPool)
 
+    @Benchmark
+    fun pmapJavaBlockFJ2000() = runBenchmark { list, f -> MultipleOpsPerThreadMap.blockSize2000.commonFJPool.pmap(list, f) }
+
+    @Benchmark
+    fun intArrayMapWithoutThreads() = runArrayBenchmark { arr ->
+        when (loadGeneratorType) {
+            FAST -> IntArray(arr.size) { KotlinLoadGenerator.looperFast(arr[it]) }
+            SLOW -> IntArray(arr.size) { KotlinLoadGenerator.looperSlow(arr[it]) }
+            else -> throw RuntimeException("Unsupported LoadGenerator type $loadGeneratorType")
+        }
+    }
+
+    @Benchmark
+    fun intArrayPmapCoroutines() = runArrayBenchmark { arr -> pmapArray(arr, coroutineRangeExecutor) }
+
+    @Benchmark
+    fun intArrayPmapJavaBlockFJ2000() = runArrayBenchmark { arr ->
+        pmapArray(arr, MultipleOpsPerThreadMap.blockSize2000.primitiveCommonFJPool)
+    }
+
+    @Benchmark
+    fun intArrayPmapJavaBlockFixedReused2000() = runArrayBenchmark { arr ->
+        pmapArray(arr, MultipleOpsPerThreadMap.blockSize2000.primitiveReusedFixedThreadPool)
+    }
+
     @Benchmark
     fun pmapJavaParallelStreamMap() = runBenchmark { list, f -> JavaApiMap.pmapParallelStream(list, f)}
 